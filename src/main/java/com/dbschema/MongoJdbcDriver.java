@@ -2,9 +2,12 @@ package com.dbschema;
 
 import com.dbschema.mongo.DriverPropertyInfoHelper;
 import com.dbschema.mongo.MongoConnection;
+import com.dbschema.mongo.mongosh.AbstractShellHolder;
+import com.dbschema.mongo.mongosh.IdleShellReleaser;
 import com.dbschema.mongo.mongosh.LazyShellHolder;
 import com.dbschema.mongo.mongosh.PrecalculatingShellHolder;
 import com.dbschema.mongo.mongosh.ShellHolder;
+import com.dbschema.mongo.mongosh.ShellPool;
 import com.mongodb.mongosh.MongoShell;
 import org.graalvm.polyglot.Engine;
 import org.jetbrains.annotations.NotNull;
@@ -15,8 +18,7 @@ import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
-import static com.dbschema.mongo.DriverPropertyInfoHelper.FETCH_DOCUMENTS_FOR_METAINFO;
-import static com.dbschema.mongo.DriverPropertyInfoHelper.FETCH_DOCUMENTS_FOR_METAINFO_DEFAULT;
+import static com.dbschema.mongo.DriverPropertyInfoHelper.*;
 import static com.dbschema.mongo.Util.newNamedThreadFactory;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
@@ -29,10 +31,14 @@ import static java.util.concurrent.Executors.newFixedThreadPool;
  * The URL excepting the jdbc: prefix is passed as it is to the MongoDb native Java driver.
  */
 public class MongoJdbcDriver implements Driver {
+  private static final int SHELL_POOL_MIN_IDLE_DEFAULT = 1;
+  private static final int SHELL_POOL_MAX_SIZE_DEFAULT = 4;
+  private static final int SHELL_POOL_IDLE_TIMEOUT_MS_DEFAULT = 5 * 60 * 1000;
   private final DriverPropertyInfoHelper propertyInfoHelper = new DriverPropertyInfoHelper();
   private @Nullable ExecutorService executorService;
   private @Nullable Engine sharedEngine;
-  private @NotNull ShellHolder shellHolder;
+  private final @Nullable ShellPool<MongoShell> shellPool;
+  private @Nullable IdleShellReleaser idleShellReleaser;
 
   static {
     try {
@@ -44,33 +50,69 @@ public class MongoJdbcDriver implements Driver {
   }
 
   public MongoJdbcDriver() {
-    shellHolder = createShellHolder();
+    shellPool = "true".equals(System.getProperty("mongosh.disableShellPrecalculation")) ? null : createShellPool();
   }
 
   @NotNull
-  private ShellHolder createShellHolder() {
-    if ("true".equals(System.getProperty("mongosh.disableShellPrecalculation"))) {
-      return new LazyShellHolder();
-    }
-    if (executorService == null) {
-      executorService = newFixedThreadPool(10, newNamedThreadFactory("MongoShell ExecutorService"));
-    }
+  private ShellPool<MongoShell> createShellPool() {
+    executorService = newFixedThreadPool(10, newNamedThreadFactory("MongoShell ExecutorService"));
     Engine engine = null;
     if (!"true".equals(System.getProperty("mongosh.disableSharedEngine"))) {
-      if (sharedEngine == null) {
-          ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-          try {
-              Thread.currentThread().setContextClassLoader(MongoShell.class.getClassLoader());
-              sharedEngine = Engine.create("js");
-          }
-          finally {
-              Thread.currentThread().setContextClassLoader(originalClassLoader);
-          }
-
+      ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+      try {
+        Thread.currentThread().setContextClassLoader(MongoShell.class.getClassLoader());
+        sharedEngine = Engine.create("js");
+      }
+      finally {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
       }
       engine = sharedEngine;
     }
-    return new PrecalculatingShellHolder(executorService, engine);
+    return new ShellPool<>(executorService, new ShellPool.MongoShellFactory(engine),
+                           getIntSystemProperty("mongosh.shellPool.minIdle", SHELL_POOL_MIN_IDLE_DEFAULT),
+                           getIntSystemProperty("mongosh.shellPool.maxSize", SHELL_POOL_MAX_SIZE_DEFAULT),
+                           getIntSystemProperty("mongosh.shellPool.idleTimeoutMs", SHELL_POOL_IDLE_TIMEOUT_MS_DEFAULT));
+  }
+
+  @NotNull
+  private ShellHolder createShellHolder(long idleTimeoutMillis) {
+    AbstractShellHolder holder = shellPool == null ? new LazyShellHolder() : new PrecalculatingShellHolder(shellPool);
+    if (idleTimeoutMillis > 0) holder.releaseWhenIdle(getIdleShellReleaser(), idleTimeoutMillis);
+    return holder;
+  }
+
+  @NotNull
+  private synchronized IdleShellReleaser getIdleShellReleaser() {
+    if (idleShellReleaser == null) idleShellReleaser = new IdleShellReleaser();
+    return idleShellReleaser;
+  }
+
+  private static int getIntSystemProperty(@NotNull String name, int defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null) return defaultValue;
+    try {
+      return Integer.parseInt(value.trim());
+    }
+    catch (NumberFormatException e) {
+      System.err.println("Invalid value of " + name + ": " + value);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Pool of warmed up shells shared by all connections of this driver, or null if shell precalculation is disabled.
+   * Exposes hit/miss and wait time counters.
+   */
+  @Nullable
+  public ShellPool<MongoShell> getShellPool() {
+    return shellPool;
+  }
+
+  /**
+   * Number of connection shells closed after staying idle longer than {@code shell_idle_timeout_ms}.
+   */
+  public synchronized long getReleasedIdleShellCount() {
+    return idleShellReleaser == null ? 0 : idleShellReleaser.getReleasedShellCount();
   }
 
   /**
@@ -91,17 +133,22 @@ public class MongoJdbcDriver implements Driver {
     }
     if (fetchDocumentsForMeta < 0) fetchDocumentsForMeta = 0;
 
+    long shellIdleTimeout = SHELL_IDLE_TIMEOUT_DEFAULT;
+    if (info.getProperty(SHELL_IDLE_TIMEOUT) != null) {
+      try {
+        shellIdleTimeout = Long.parseLong(info.getProperty(SHELL_IDLE_TIMEOUT));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
+
     if (url.startsWith("jdbc:")) {
       url = url.substring("jdbc:".length());
     }
 
     String username = info.getProperty("user");
     String password = info.getProperty("password");
-    synchronized (this) {
-      ShellHolder shellHolder = this.shellHolder;
-      this.shellHolder = createShellHolder();
-      return new MongoConnection(url, info, username, password, fetchDocumentsForMeta, shellHolder);
-    }
+    return new MongoConnection(url, info, username, password, fetchDocumentsForMeta, createShellHolder(shellIdleTimeout));
   }
 
 
@@ -155,8 +202,9 @@ public class MongoJdbcDriver implements Driver {
     return null;
   }
 
-  public void close() {
-    shellHolder.close();
+  public synchronized void close() {
+    if (idleShellReleaser != null) idleShellReleaser.close();
+    if (shellPool != null) shellPool.close();
     if (sharedEngine != null) sharedEngine.close();
     if (executorService != null) executorService.shutdownNow();
   }
@@ -0,0 +1,60 @@
+package com.dbschema.mongo;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Lets {@link java.sql.Statement#cancel()} stop the query that is currently executed by a statement.
+ * <p>
+ * Operations sent by the Java driver are tagged with {@link #getComment()}, so they can be found with
+ * {@code $currentOp} and killed on the server. Operations sent by the shell are stopped by killing their sessions,
+ * see {@link SessionTracker}.
+ */
+public final class Cancellation {
+  /**
+   * SQLSTATE of "operation canceled".
+   */
+  public static final String SQL_STATE = "HY008";
+  private final String comment = "jdbc-statement-" + UUID.randomUUID();
+  private @Nullable Runnable action;
+  private boolean isCancelled;
+
+  @NotNull
+  public String getComment() {
+    return comment;
+  }
+
+  /**
+   * Called when a new query is executed by the statement.
+   */
+  public synchronized void reset() {
+    isCancelled = false;
+    action = null;
+  }
+
+  /**
+   * Sets how to stop the operation that is running now. If the statement is already cancelled, the action is run right away.
+   */
+  public void onCancel(@Nullable Runnable action) {
+    synchronized (this) {
+      this.action = action;
+      if (!isCancelled) return;
+    }
+    if (action != null) action.run();
+  }
+
+  public void cancel() {
+    Runnable action;
+    synchronized (this) {
+      isCancelled = true;
+      action = this.action;
+    }
+    if (action != null) action.run();
+  }
+
+  public synchronized boolean isCancelled() {
+    return isCancelled;
+  }
+}
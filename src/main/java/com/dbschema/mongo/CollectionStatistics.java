@@ -0,0 +1,96 @@
+package com.dbschema.mongo;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage and usage statistics of a collection and its indexes.
+ * <p>
+ * Read with one aggregation: {@code $collStats} storage stats followed by {@code $indexStats} through
+ * {@code $unionWith}, servers before 4.4 run two aggregations. Sharded collections return a document per shard,
+ * their numbers are summed.
+ * Usage counts are the operations since the server started or the index was created, they are not persisted.
+ */
+public record CollectionStatistics(long documentCount, long storageSize, @NotNull Map<String, IndexStatistics> indexes) {
+  public static final CollectionStatistics EMPTY = new CollectionStatistics(0, 0, Map.of());
+  private static final int UNRECOGNIZED_PIPELINE_STAGE = 40324;
+
+  @NotNull
+  public IndexStatistics getIndex(@NotNull String name) {
+    return indexes.getOrDefault(name, IndexStatistics.EMPTY);
+  }
+
+  @NotNull
+  public static CollectionStatistics read(@NotNull MongoCollection<Document> collection) {
+    Document collStats = new Document("$collStats", new Document("storageStats", new Document()));
+    Document indexStats = new Document("$indexStats", new Document());
+    List<Document> pipeline = List.of(collStats,
+                                      new Document("$unionWith", new Document("coll", collection.getNamespace().getCollectionName())
+                                        .append("pipeline", List.of(indexStats))));
+    try {
+      return of(collection.aggregate(pipeline));
+    }
+    catch (MongoServerException e) {
+      if (e.getCode() != UNRECOGNIZED_PIPELINE_STAGE) throw e;
+    }
+    // servers before 4.4 don't know $unionWith
+    List<Document> documents = collection.aggregate(List.of(collStats)).into(new ArrayList<>());
+    collection.aggregate(List.of(indexStats)).into(documents);
+    return of(documents);
+  }
+
+  /**
+   * @param documents results of {@code $collStats} and {@code $indexStats}
+   */
+  @NotNull
+  static CollectionStatistics of(@NotNull Iterable<Document> documents) {
+    long documentCount = 0, storageSize = 0;
+    Map<String, Long> sizes = new HashMap<>();
+    Map<String, Long> accesses = new HashMap<>();
+    for (Document document : documents) {
+      Document storageStats = document.get("storageStats", Document.class);
+      if (storageStats != null) {
+        documentCount += getLong(storageStats, "count");
+        storageSize += getLong(storageStats, "storageSize");
+        Document indexSizes = storageStats.get("indexSizes", Document.class);
+        if (indexSizes != null) {
+          for (String name : indexSizes.keySet()) {
+            sizes.merge(name, getLong(indexSizes, name), Long::sum);
+          }
+        }
+      }
+      else if (document.get("name") instanceof String name) {
+        Document indexAccesses = document.get("accesses", Document.class);
+        accesses.merge(name, indexAccesses != null ? getLong(indexAccesses, "ops") : 0, Long::sum);
+      }
+    }
+    Map<String, IndexStatistics> indexes = new HashMap<>();
+    for (String name : sizes.keySet()) {
+      indexes.put(name, new IndexStatistics(sizes.get(name), accesses.getOrDefault(name, 0L)));
+    }
+    for (String name : accesses.keySet()) {
+      indexes.putIfAbsent(name, new IndexStatistics(0, accesses.get(name)));
+    }
+    return new CollectionStatistics(documentCount, storageSize, indexes);
+  }
+
+  private static long getLong(@NotNull Document document, @NotNull String key) {
+    Object value = document.get(key);
+    return value instanceof Number n ? n.longValue() : 0;
+  }
+
+  /**
+   * @param size     size of the index in bytes
+   * @param accesses number of operations that used the index
+   */
+  public record IndexStatistics(long size, long accesses) {
+    public static final IndexStatistics EMPTY = new IndexStatistics(0, 0);
+  }
+}
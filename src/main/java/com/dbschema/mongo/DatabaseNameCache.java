@@ -0,0 +1,71 @@
+package com.dbschema.mongo;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Names of the databases the user is authorized for, listed again after {@code ttlMillis}.
+ * If they can't be listed, or none are listed, only the fallback database is returned and cached.
+ */
+final class DatabaseNameCache {
+  private final long ttlNanos;
+  private final Source<List<String>> lister;
+  private final Source<String> fallback;
+  private final LongSupplier clock;
+  private volatile CachedNames names;
+
+  /**
+   * @param ttlMillis time to live of the names, 0 lists databases on every call
+   * @param fallback  database of the connection string
+   */
+  DatabaseNameCache(long ttlMillis, @NotNull Source<List<String>> lister, @NotNull Source<String> fallback) {
+    this(ttlMillis, lister, fallback, System::nanoTime);
+  }
+
+  DatabaseNameCache(long ttlMillis, @NotNull Source<List<String>> lister, @NotNull Source<String> fallback,
+                    @NotNull LongSupplier clock) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    this.lister = lister;
+    this.fallback = fallback;
+    this.clock = clock;
+  }
+
+  @NotNull
+  List<String> get() throws SQLAlreadyClosedException {
+    long now = clock.getAsLong();
+    CachedNames cached = names;
+    if (cached != null && now - cached.readAt() < ttlNanos) return cached.names();
+    List<String> list;
+    try {
+      list = lister.get();
+    }
+    catch (SQLAlreadyClosedException e) {
+      throw e;
+    }
+    catch (Throwable ex) {
+      System.err.println("Cannot list databases, using the database of the connection string. " + ex);
+      list = List.of();
+    }
+    if (list.isEmpty()) list = List.of(fallback.get());
+    list = List.copyOf(list);
+    if (ttlNanos > 0) names = new CachedNames(list, now);
+    return list;
+  }
+
+  /**
+   * The next call lists databases again, e.g. after a database was created or dropped.
+   */
+  void invalidate() {
+    names = null;
+  }
+
+  interface Source<T> {
+    T get() throws SQLAlreadyClosedException;
+  }
+
+  private record CachedNames(@NotNull List<String> names, long readAt) {
+  }
+}
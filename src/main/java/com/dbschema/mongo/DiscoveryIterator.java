@@ -0,0 +1,95 @@
+package com.dbschema.mongo;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs up to {@code concurrency} tasks ahead of the one being read and returns their results in the order of the tasks.
+ * Tasks that fail or return null are skipped. Closing the iterator cancels the tasks that have not finished,
+ * running ones are interrupted, and no more tasks are started.
+ */
+public class DiscoveryIterator<T> implements Iterator<T>, AutoCloseable {
+  private final Iterator<? extends Callable<? extends T>> tasks;
+  private final int concurrency;
+  private final Executor executor;
+  private final Deque<FutureTask<? extends T>> running = new ConcurrentLinkedDeque<>();
+  private volatile boolean closed;
+  private T next;
+
+  DiscoveryIterator(@NotNull Iterator<? extends Callable<? extends T>> tasks, int concurrency, @NotNull Executor executor) {
+    this.tasks = tasks;
+    this.concurrency = Math.max(1, concurrency);
+    this.executor = executor;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null) {
+      if (closed) return false;
+      submit();
+      // the task stays in the window while it is awaited, so no more than concurrency tasks run at a time
+      FutureTask<? extends T> task = running.peek();
+      if (task == null) return false;
+      next = await(task);
+      running.remove(task);
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    T result = next;
+    next = null;
+    return result;
+  }
+
+  private void submit() {
+    while (!closed && running.size() < concurrency && tasks.hasNext()) {
+      FutureTask<? extends T> task = new FutureTask<>(tasks.next());
+      running.add(task);
+      executor.execute(task);
+      // close() may have missed the task
+      if (closed) task.cancel(true);
+    }
+  }
+
+  private T await(@NotNull FutureTask<? extends T> task) {
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      return null;
+    }
+    catch (CancellationException e) {
+      return null;
+    }
+    catch (ExecutionException e) {
+      System.err.println("Discovery failed, skipping it. " + e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Can be called from any thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    FutureTask<? extends T> task;
+    while ((task = running.poll()) != null) {
+      task.cancel(true);
+    }
+  }
+}
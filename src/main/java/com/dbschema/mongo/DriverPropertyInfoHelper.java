@@ -23,6 +23,24 @@ public class DriverPropertyInfoHelper {
   public static final int FETCH_DOCUMENTS_FOR_METAINFO_DEFAULT = 10;
   public static final String MAX_POOL_SIZE = "max_connection_pool_size";
   public static final int MAX_POOL_SIZE_DEFAULT = 3;
+  public static final String SHELL_IDLE_TIMEOUT = "shell_idle_timeout_ms";
+  public static final long SHELL_IDLE_TIMEOUT_DEFAULT = 0;
+  public static final String PREFETCH_ROWS = "prefetch_rows";
+  public static final int PREFETCH_ROWS_DEFAULT = 0;
+  public static final String FLATTEN_RESULTS = "flatten_results";
+  public static final boolean FLATTEN_RESULTS_DEFAULT = false;
+  public static final String METADATA_CONCURRENCY = "metadata_concurrency";
+  public static final int METADATA_CONCURRENCY_DEFAULT = 4;
+  public static final String METADATA_CACHE_TTL = "metadata_cache_ttl_ms";
+  public static final long METADATA_CACHE_TTL_DEFAULT = 60_000;
+  public static final String METADATA_CHANGE_STREAM = "metadata_change_stream";
+  public static final boolean METADATA_CHANGE_STREAM_DEFAULT = false;
+  public static final String SCHEMA_CACHE_DIR = "schema_cache_dir";
+  public static final String DATABASE_LIST_TTL = "database_list_ttl_ms";
+  public static final long DATABASE_LIST_TTL_DEFAULT = 5_000;
+  public static final String SCHEMA_INFERENCE = "schema_inference";
+  public static final String SCHEMA_INFERENCE_DEFAULT = "client";
+  public static final String[] SCHEMA_INFERENCE_CHOICES = new String[]{"client", "server"};
   private static final String GET_MAX_SIZE_DOCS = "https://mongodb.github.io/mongo-java-driver/3.6/javadoc/com/mongodb/connection/ConnectionPoolSettings.html#getMaxSize--";
   public static final String ENCODE_CREDENTIALS = "auto_encode_username_and_password";
   public static final boolean ENCODE_CREDENTIALS_DEFAULT = true;
@@ -68,8 +86,41 @@ public class DriverPropertyInfoHelper {
     addPropInfo(propInfos, FETCH_DOCUMENTS_FOR_METAINFO, Integer.toString(FETCH_DOCUMENTS_FOR_METAINFO_DEFAULT), "Number of documents that will be fetched per collection in order " +
         "to return meta information from DatabaseMetaData.getColumns method.", null);
 
+    addPropInfo(propInfos, METADATA_CONCURRENCY, Integer.toString(METADATA_CONCURRENCY_DEFAULT), "Number of collections " +
+        "sampled in parallel for DatabaseMetaData methods. Requests beyond " + MAX_POOL_SIZE + " wait for a free connection.", null);
+
+    addPropInfo(propInfos, METADATA_CACHE_TTL, Long.toString(METADATA_CACHE_TTL_DEFAULT), "How long sampled collection " +
+        "structure and indexes are reused by DatabaseMetaData methods of a connection, in milliseconds. 0 disables the cache.", null);
+
+    addPropInfo(propInfos, DATABASE_LIST_TTL, Long.toString(DATABASE_LIST_TTL_DEFAULT), "How long the list of databases " +
+        "is reused by DatabaseMetaData methods of a connection, in milliseconds. 0 lists databases on every call.", null);
+
+    addPropInfo(propInfos, METADATA_CHANGE_STREAM, Boolean.toString(METADATA_CHANGE_STREAM_DEFAULT), "Watch databases with " +
+        "change streams and keep cached collections until they are created, dropped, renamed or their indexes change. " +
+        "Standalone servers don't support change streams, " + METADATA_CACHE_TTL + " is used there.", new String[]{"true", "false"});
+
+    addPropInfo(propInfos, SCHEMA_INFERENCE, SCHEMA_INFERENCE_DEFAULT, "Where fields of sampled documents are discovered. " +
+        "'client' reads the sampled documents, 'server' runs an aggregation that returns only field paths, types and counts, " +
+        "which is faster for large documents.", SCHEMA_INFERENCE_CHOICES);
+
+    addPropInfo(propInfos, SCHEMA_CACHE_DIR, "", "Directory where sampled collection structure is saved between connections. " +
+        "Saved collections are returned at once and checked in background against the collection UUID, document count and indexes. " +
+        "Empty disables the cache.", null);
+
     addPropInfo(propInfos, MAX_POOL_SIZE, Integer.toString(MAX_POOL_SIZE_DEFAULT), "MongoDB connections pool size per one connection from IDE. See " + GET_MAX_SIZE_DOCS, null);
 
+    addPropInfo(propInfos, SHELL_IDLE_TIMEOUT, Long.toString(SHELL_IDLE_TIMEOUT_DEFAULT), "Close the MongoShell of a connection after it has not been " +
+        "used for this many milliseconds. The shell is recreated on the next query, user variables are lost. 0 disables it. " +
+        "The number of shells released is reported by MongoJdbcDriver.getReleasedIdleShellCount().", null);
+
+    addPropInfo(propInfos, PREFETCH_ROWS, Integer.toString(PREFETCH_ROWS_DEFAULT), "Number of documents read in background ahead of " +
+        "the application from cursors of queries that are run without the shell. 0 disables prefetching.", null);
+
+    addPropInfo(propInfos, FLATTEN_RESULTS, Boolean.toString(FLATTEN_RESULTS_DEFAULT), "Return the fields of documents found by " +
+        "find() queries that are run without the shell as separate typed columns. Columns are discovered from sample documents " +
+        "of the collection, see " + FETCH_DOCUMENTS_FOR_METAINFO + ". They follow " + METADATA_CACHE_TTL + ", if it is 0 " +
+        "the collection is sampled once per connection.", new String[]{"true", "false"});
+
     addPropInfo(propInfos, RETRY_WRITES, null, "See " + RETRY_WRITES_DOCS, RETRY_WRITES_CHOICES);
 
     addPropInfo(propInfos, APPLICATION_NAME, null, "Sets the logical name of the application.", null);
@@ -0,0 +1,174 @@
+package com.dbschema.mongo;
+
+import com.dbschema.mongo.schema.MetaCollectionCache;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches databases with change streams and invalidates the collections of {@link MetaCollectionCache}
+ * that were created, dropped, renamed or had their indexes or options changed.
+ * <p>
+ * Databases are watched once their first collection is discovered. While a database is watched with expanded events
+ * (MongoDB 6.0+) its entries are {@link MetaCollectionCache#pinDatabase(String) pinned} and never expire.
+ * Data changes are not watched, new fields show up after the collection is invalidated.
+ * Older servers only report drops and renames, so their entries still expire with the time to live.
+ * Standalone servers don't support change streams at all, the cache falls back to the time to live there.
+ */
+class MetaCollectionWatcher implements AutoCloseable {
+  private static final List<String> STRUCTURAL_EVENTS = List.of("create", "drop", "rename", "dropDatabase", "invalidate",
+                                                                "createIndexes", "dropIndexes", "modify");
+  private static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+  private static final long MAX_AWAIT_MILLIS = 1000;
+
+  private final MetaCollectionCache cache;
+  private final Runnable onDatabasesChanged;
+  private final Consumer<MongoNamespace> onCollectionDropped;
+  private final Map<String, Thread> watchers = new ConcurrentHashMap<>();
+  private final Set<String> unwatchable = ConcurrentHashMap.newKeySet();
+  private volatile boolean notSupported;
+  private volatile boolean closed;
+
+  /**
+   * @param onDatabasesChanged  called when a database may have been created or dropped, e.g. to list databases again
+   * @param onCollectionDropped called when a collection was dropped or renamed, with its old namespace
+   */
+  MetaCollectionWatcher(@NotNull MetaCollectionCache cache, @NotNull Runnable onDatabasesChanged,
+                        @NotNull Consumer<MongoNamespace> onCollectionDropped) {
+    this.cache = cache;
+    this.onDatabasesChanged = onDatabasesChanged;
+    this.onCollectionDropped = onCollectionDropped;
+  }
+
+  /**
+   * Starts watching the database unless it is already watched. The stream is opened before this method returns,
+   * so collections discovered afterwards can't miss changes.
+   */
+  void watch(@NotNull MongoDatabase database) {
+    String db = database.getName();
+    if (closed || notSupported || !cache.isEnabled() || unwatchable.contains(db) || watchers.containsKey(db)) return;
+    watchers.computeIfAbsent(db, name -> {
+      Stream stream = open(database, null);
+      if (stream == null) return null;
+      if (stream.expanded()) cache.pinDatabase(name);
+      return Thread.ofVirtual().name("MetaCollection Watcher " + name).start(() -> listen(database, stream));
+    });
+  }
+
+  @Nullable
+  private Stream open(@NotNull MongoDatabase database, @Nullable BsonDocument startAfter) {
+    try {
+      return new Stream(changeStream(database, startAfter).showExpandedEvents(true).cursor(), true);
+    }
+    catch (MongoCommandException e) {
+      if (e.getErrorCode() == CHANGE_STREAMS_NOT_SUPPORTED) {
+        notSupported = true;
+        System.err.println("Change streams are not supported by the server, cached collections expire by time. " + e.getErrorMessage());
+        return null;
+      }
+    }
+    catch (Throwable ignored) {
+    }
+    try {
+      // servers before 6.0 don't know showExpandedEvents
+      return new Stream(changeStream(database, startAfter).cursor(), false);
+    }
+    catch (Throwable t) {
+      unwatchable.add(database.getName());
+      System.err.println("Cannot watch database " + database.getName() + ", cached collections expire by time. " + t);
+      return null;
+    }
+  }
+
+  @NotNull
+  private static ChangeStreamIterable<Document> changeStream(@NotNull MongoDatabase database, @Nullable BsonDocument startAfter) {
+    ChangeStreamIterable<Document> iterable = database.watch(List.of(Aggregates.match(Filters.in("operationType", STRUCTURAL_EVENTS))))
+      .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    return startAfter != null ? iterable.startAfter(startAfter) : iterable;
+  }
+
+  private void listen(@NotNull MongoDatabase database, @NotNull Stream stream) {
+    String db = database.getName();
+    MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor();
+    try {
+      while (!closed) {
+        ChangeStreamDocument<Document> event = cursor.tryNext();
+        if (event == null) continue;
+        if (handle(db, event)) {
+          // the stream is closed by the server after invalidate, e.g. when the database is dropped
+          cursor.close();
+          Stream reopened = open(database, event.getResumeToken());
+          if (reopened == null) break;
+          if (!reopened.expanded()) cache.unpinDatabase(db);
+          cursor = reopened.cursor();
+        }
+      }
+    }
+    catch (Throwable t) {
+      if (!closed) System.err.println("Stopped watching database " + db + ", cached collections expire by time. " + t);
+    }
+    finally {
+      try {
+        cursor.close();
+      }
+      catch (Throwable ignored) {
+      }
+      watchers.remove(db);
+      cache.unpinDatabase(db);
+      // changes may have been missed
+      if (!closed) cache.invalidateDatabase(db);
+    }
+  }
+
+  /**
+   * @return true if the stream was invalidated and has to be reopened
+   */
+  private boolean handle(@NotNull String db, @NotNull ChangeStreamDocument<Document> event) {
+    String type = event.getOperationTypeString();
+    // databases exist while they have collections
+    if ("create".equals(type) || "drop".equals(type) || "dropDatabase".equals(type) || "invalidate".equals(type)) {
+      onDatabasesChanged.run();
+    }
+    if ("dropDatabase".equals(type) || "invalidate".equals(type)) {
+      cache.invalidateDatabase(db);
+      return "invalidate".equals(type);
+    }
+    invalidate(event.getNamespace());
+    invalidate(event.getDestinationNamespace());
+    if (("drop".equals(type) || "rename".equals(type)) && event.getNamespace() != null) {
+      onCollectionDropped.accept(event.getNamespace());
+    }
+    return false;
+  }
+
+  private void invalidate(@Nullable MongoNamespace namespace) {
+    if (namespace != null) cache.invalidate(namespace.getDatabaseName(), namespace.getCollectionName());
+  }
+
+  /**
+   * Stops all watchers, each of them exits after at most one await period or once the client is closed.
+   */
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  private record Stream(@NotNull MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor, boolean expanded) {
+  }
+}
@@ -5,7 +5,7 @@ import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.MongoIterable;
+import org.bson.Document;
 import org.bson.UuidRepresentation;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -14,7 +14,10 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyStore;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 import static com.dbschema.mongo.DriverPropertyInfoHelper.*;
@@ -26,6 +29,14 @@ public class MongoClientWrapper implements AutoCloseable {
   private boolean isClosed = false;
   private final MongoClient mongoClient;
   public final String databaseNameFromUrl;
+  /**
+   * Sorted hosts of the connection string, identifies the cluster.
+   */
+  public final String cluster;
+  /**
+   * Sessions of commands sent by threads evaluating shell scripts.
+   */
+  public final SessionTracker sessionTracker = new SessionTracker();
 
   public MongoClientWrapper(@NotNull String uri, @NotNull Properties prop, @Nullable String username, @Nullable String password) throws SQLException {
     try {
@@ -51,10 +62,12 @@ public class MongoClientWrapper implements AutoCloseable {
 
       ConnectionString connectionString = new ConnectionString(uri);
       databaseNameFromUrl = connectionString.getDatabase();
+      cluster = String.join(",", new TreeSet<>(connectionString.getHosts()));
       int maxPoolSize = getMaxPoolSize(prop);
       MongoClientSettings.Builder builder = MongoClientSettings.builder()
           .applyConnectionString(connectionString)
-          .applyToConnectionPoolSettings(b -> b.maxSize(maxPoolSize));
+          .applyToConnectionPoolSettings(b -> b.maxSize(maxPoolSize))
+          .addCommandListener(sessionTracker);
       String application = prop.getProperty(APPLICATION_NAME);
       if (!isNullOrEmpty(application)) {
         builder.applicationName(application);
@@ -150,9 +163,18 @@ public class MongoClientWrapper implements AutoCloseable {
     if (isClosed) throw new SQLAlreadyClosedException(this.getClass().getSimpleName());
   }
 
-  public MongoIterable<String> listDatabaseNames() throws SQLAlreadyClosedException {
+  /**
+   * Lists only names of databases the user has privileges on. Without sizes the server doesn't have to lock
+   * every database, and users without the listDatabases privilege can still list their databases.
+   */
+  @NotNull
+  public List<String> listAuthorizedDatabaseNames() throws SQLAlreadyClosedException {
     checkClosed();
-    return mongoClient.listDatabaseNames();
+    List<String> names = new ArrayList<>();
+    for (Document database : mongoClient.listDatabases().nameOnly(true).authorizedDatabasesOnly(true)) {
+      names.add(database.getString("name"));
+    }
+    return names;
   }
 
   public MongoDatabase getDatabase(String databaseName) throws SQLAlreadyClosedException {
@@ -17,6 +17,8 @@ public class MongoConnection implements Connection {
   private String schema;
   private boolean isClosed = false;
   private boolean isReadOnly = false;
+  private final int prefetchRows;
+  private final boolean flattenResults;
 
   public MongoConnection(@NotNull String url,
                          @NotNull Properties info,
@@ -26,6 +28,17 @@ public class MongoConnection implements Connection {
                          @NotNull ShellHolder shellHolder) throws SQLException {
     this.service = new MongoService(url, info, username, password, fetchDocumentsForMeta);
     this.scriptEngine = new MongoshScriptEngine(this, shellHolder);
+    int prefetch = DriverPropertyInfoHelper.PREFETCH_ROWS_DEFAULT;
+    if (info.getProperty(DriverPropertyInfoHelper.PREFETCH_ROWS) != null) {
+      try {
+        prefetch = Integer.parseInt(info.getProperty(DriverPropertyInfoHelper.PREFETCH_ROWS));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
+    prefetchRows = Math.max(0, prefetch);
+    String flatten = info.getProperty(DriverPropertyInfoHelper.FLATTEN_RESULTS);
+    flattenResults = flatten != null ? Boolean.parseBoolean(flatten) : DriverPropertyInfoHelper.FLATTEN_RESULTS_DEFAULT;
     try {
       setSchema(service.getDatabaseNameFromUrl());
     }
@@ -45,6 +58,14 @@ public class MongoConnection implements Connection {
     return scriptEngine;
   }
 
+  public int getPrefetchRows() {
+    return prefetchRows;
+  }
+
+  public boolean isFlattenResults() {
+    return flattenResults;
+  }
+
   @Override
   public <T> T unwrap(Class<T> iface) throws SQLException {
     checkClosed();
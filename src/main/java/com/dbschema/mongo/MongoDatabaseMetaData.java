@@ -5,7 +5,6 @@ import com.dbschema.mongo.schema.*;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,6 +13,8 @@ import java.util.List;
  */
 public class MongoDatabaseMetaData implements DatabaseMetaData {
   private static final String DB_NAME = "Mongo";
+  // WiredTiger allocation unit, MongoDB doesn't report sizes in pages
+  private static final int PAGE_SIZE = 4096;
   private final MongoConnection con;
 
   public final static String OBJECT_ID_TYPE_NAME = "OBJECT_ID";
@@ -63,9 +64,8 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
 
     for (String schema : con.getService().getDatabaseNames()) {
       if (pSchema.matches(schema)) {
-        for (String tableName : con.getService().getCollectionNames(schema)) {
-          if (pTable.matches(tableName))
-            resultSet.addRow(createTableRow(schema, tableName));
+        for (String tableName : con.getService().getCollectionNames(schema, pTable)) {
+          resultSet.addRow(createTableRow(schema, tableName));
         }
       }
     }
@@ -94,56 +94,79 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
    * java.lang.String)
    */
   @Override
-  public ResultSet getColumns(String catalogName, String schemaName, String tableNamePattern, String columnNamePattern) throws SQLAlreadyClosedException {
+  public ResultSet getColumns(String catalogName, String schemaName, String tableNamePattern, String columnNamePattern) throws SQLException {
     // As far as this driver implementation goes, every "table" in MongoDB is actually a collection, and
     // every collection "table" has two columns - "_id" column which is the primary key, and a "document"
     // column which is the JSON document corresponding to the "_id". An "_id" value can be specified on
     // insert, or it can be omitted, in which case MongoDB generates a unique value.
-    List<MetaCollection> collections = con.getService().getMetaCollections(schemaName, tableNamePattern);
-
-    ListResultSet result = new ListResultSet();
+    ColumnsResultSet result = new ColumnsResultSet(con.getService().iterateMetaCollections(schemaName, tableNamePattern),
+                                                   MongoNamePattern.create(columnNamePattern));
     result.setColumnNames("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME",
         "DATA_TYPE", "TYPE_NAME", "COLUMN_SIZE", "BUFFER_LENGTH", "DECIMAL_DIGITS", "NUM_PREC_RADIX",
         "NULLABLE", "REMARKS", "COLUMN_DEF", "SQL_DATA_TYPE", "SQL_DATETIME_SUB", "CHAR_OCTET_LENGTH",
         "ORDINAL_POSITION", "IS_NULLABLE", "SCOPE_CATLOG", "SCOPE_SCHEMA", "SCOPE_TABLE",
         "SOURCE_DATA_TYPE", "IS_AUTOINCREMENT");
+    result.setColumnType("DATA_TYPE", Types.INTEGER);
+    result.setColumnType("NULLABLE", Types.INTEGER);
+    return result;
+  }
 
-    List<String[]> columnsData = new ArrayList<>();
-    for (MetaCollection collection : collections) {
-      MongoNamePattern p = MongoNamePattern.create(columnNamePattern);
+  /**
+   * Rows of {@link #getColumns}. Collections are discovered one at a time when the rows of the previous one are read,
+   * so the first rows are returned without waiting for all collections to be sampled.
+   */
+  private static class ColumnsResultSet extends ListResultSet {
+    private final DiscoveryIterator<MetaCollection> collections;
+    private final MongoNamePattern columnNamePattern;
+
+    ColumnsResultSet(@NotNull DiscoveryIterator<MetaCollection> collections, @NotNull MongoNamePattern columnNamePattern) {
+      this.collections = collections;
+      this.columnNamePattern = columnNamePattern;
+    }
+
+    @Override
+    public void close() throws SQLAlreadyClosedException {
+      // stops sampling collections that will not be read
+      collections.close();
+      super.close();
+    }
+
+    @Override
+    protected boolean fetchRows() throws SQLException {
+      if (!collections.hasNext()) return false;
+      clearRows();
+      MetaCollection collection = collections.next();
       for (MetaField field : collection.fields) {
-        if (p.matches(field.name)) {
-          exportColumnsRecursive(collection, columnsData, field);
+        if (columnNamePattern.matches(field.name)) {
+          exportColumnsRecursive(collection, this, field);
         }
       }
+      sortRows("COLUMN_NAME", (o1, o2) -> {
+        String n1 = (String) o1;
+        String n2 = (String) o2;
+        if (n1.equals(n2)) return 0;
+        if ("_id".equals(n1)) return -1;
+        if ("_id".equals(n2)) return 1;
+        return n1.compareTo(n2);
+      });
+      return true;
     }
-    columnsData.sort((o1, o2) -> {
-      String n1 = o1[3];
-      String n2 = o2[3];
-      if ("_id".equals(n1)) return -1;
-      if ("_id".equals(n2)) return 1;
-      return n1.compareTo(n2);
-    });
-    for (String[] column : columnsData) {
-      result.addRow(column);
-    }
-    return result;
   }
 
-  private void exportColumnsRecursive(MetaCollection collection, List<String[]> columnsData, MetaField field) {
+  private static void exportColumnsRecursive(MetaCollection collection, ListResultSet result, MetaField field) {
     String name = field.getNameWithPath();
-    columnsData.add(new String[]{
+    result.addRow(new Object[]{
         DB_NAME, // "TABLE_CAT",
         collection.db, // "TABLE_SCHEMA",
         collection.name, // "TABLE_NAME", (i.e. MongoDB Collection Name)
         name, // "COLUMN_NAME",
-        "" + field.type, // "DATA_TYPE",
+        field.type, // "DATA_TYPE",
         field.typeName, // "TYPE_NAME",
         null, // "COLUMN_SIZE",
         null, // "BUFFER_LENGTH", (not used)
         null, // "DECIMAL_DIGITS",
         null, // "NUM_PREC_RADIX",
-        "" + (field.isMandatory() ? columnNoNulls : columnNullable), // "NULLABLE",
+        field.isMandatory() ? columnNoNulls : columnNullable, // "NULLABLE",
         null, // "REMARKS",
         null, // "COLUMN_DEF",
         null, // "SQL_DATA_TYPE", (not used)
@@ -160,7 +183,7 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
     if (field instanceof MetaJson) {
       MetaJson json = (MetaJson) field;
       for (MetaField children : json.fields) {
-        exportColumnsRecursive(collection, columnsData, children);
+        exportColumnsRecursive(collection, result, children);
       }
     }
   }
@@ -247,16 +270,39 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
      *	<LI><B>FILTER_CONDITION</B> String => Filter condition, if any.
      *      (may be <code>null</code>)
      *  </OL>
+     * Two columns are added: INDEX_SIZE in bytes and INDEX_ACCESSES, the number of operations that used the index.
+     * Pages are counted in units of PAGE_SIZE bytes. Cardinality of non-unique indexes is unknown and reported as 0.
      */
     ListResultSet result = new ListResultSet();
     result.setColumnNames("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "NON_UNIQUE", "INDEX_QUALIFIER", "INDEX_NAME",
-        "TYPE", "ORDINAL_POSITION", "COLUMN_NAME", "ASC_OR_DESC", "CARDINALITY", "PAGES", "FILTER_CONDITION");
+        "TYPE", "ORDINAL_POSITION", "COLUMN_NAME", "ASC_OR_DESC", "CARDINALITY", "PAGES", "FILTER_CONDITION",
+        "INDEX_SIZE", "INDEX_ACCESSES");
 
-    List<MetaCollection> collections = con.getService().getMetaCollections(schemaName, tableNamePattern);
+    MongoService service = con.getService();
+    List<MetaCollection> collections = service.getMetaCollections(schemaName, tableNamePattern);
     for (MetaCollection collection : collections) {
+      // statistics may be cached unless exact ones are requested
+      CollectionStatistics statistics = service.getCollectionStatistics(collection.db, collection.name, approximate);
+      result.addRow(new Object[]{collection.name, // "TABLE_CAT",
+          null, // "TABLE_SCHEMA",
+          collection.name, // "TABLE_NAME",
+          "NO", // "NON-UNIQUE",
+          null, // "INDEX QUALIFIER",
+          null, // "INDEX_NAME",
+          "" + DatabaseMetaData.tableIndexStatistic, // "TYPE",
+          "0", // "ORDINAL_POSITION"
+          null, // "COLUMN_NAME"
+          null, // "ASC_OR_DESC",
+          statistics.documentCount(), // "CARDINALITY",
+          pages(statistics.storageSize()), // "PAGES",
+          null, // "FILTER_CONDITION",
+          null, // "INDEX_SIZE",
+          null // "INDEX_ACCESSES",
+      });
       for (MetaIndex index : collection.metaIndexes) {
+        CollectionStatistics.IndexStatistics indexStatistics = statistics.getIndex(index.name);
         for (MetaIndexField indexField : index.metaIndexFields) {
-          result.addRow(new String[]{collection.name, // "TABLE_CAT",
+          result.addRow(new Object[]{collection.name, // "TABLE_CAT",
               null, // "TABLE_SCHEMA",
               collection.name, // "TABLE_NAME", (i.e. MongoDB Collection Name)
               index.pk || index.unique ? "NO" : "YES", // "NON-UNIQUE",
@@ -266,9 +312,11 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
               "" + index.metaIndexFields.indexOf(indexField), // "ORDINAL_POSITION"
               indexField.getNameWithPath(), // "COLUMN_NAME"
               indexField.ascOrDesc == 1 ? "A" : indexField.ascOrDesc == -1 ? "D" : null, // "ASC_OR_DESC",
-              "0", // "CARDINALITY",
-              "0", // "PAGES",
-              "" // "FILTER_CONDITION",
+              index.pk || index.unique ? statistics.documentCount() : 0L, // "CARDINALITY",
+              pages(indexStatistics.size()), // "PAGES",
+              "", // "FILTER_CONDITION",
+              indexStatistics.size(), // "INDEX_SIZE",
+              indexStatistics.accesses() // "INDEX_ACCESSES",
           });
         }
       }
@@ -276,6 +324,10 @@ public class MongoDatabaseMetaData implements DatabaseMetaData {
     return result;
   }
 
+  private static long pages(long bytes) {
+    return (bytes + PAGE_SIZE - 1) / PAGE_SIZE;
+  }
+
   /**
    * @see java.sql.DatabaseMetaData#getTypeInfo()
    */
@@ -1,5 +1,7 @@
 package com.dbschema.mongo;
 
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -55,6 +57,19 @@ public final class MongoNamePattern {
            pattern == null || pattern.matcher(name).matches();
   }
 
+  /**
+   * Server side equivalent of {@link #matches(String)}: an exact match for plain names, otherwise an anchored regex.
+   * The generated patterns only use syntax that Java and PCRE interpret the same way.
+   *
+   * @return null if the pattern matches all names
+   */
+  @Nullable
+  public Bson toFilter(@NotNull String fieldName) {
+    if (plain != null) return Filters.eq(fieldName, plain);
+    if (pattern == null) return null;
+    return Filters.regex(fieldName, "^" + pattern.pattern() + "\\z");
+  }
+
   /**
    * Given an inputPattern using SQL syntax (e.g. % for wildcard, and '_' for single character) generate a Java Pattern
    * that can be used to validate input.
@@ -1,9 +1,12 @@
 package com.dbschema.mongo;
 
+import com.dbschema.mongo.resultSet.ResultSetIterator;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.ReplaceOptions;
 import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
 import org.intellij.lang.annotations.Language;
 
 import java.io.InputStream;
@@ -11,18 +14,28 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class MongoPreparedStatement implements PreparedStatement {
   private final MongoConnection connection;
-  private ResultSet lastResultSet;
+  private volatile ResultSet lastResultSet;
+  private final Cancellation cancellation = new Cancellation();
   private boolean isClosed = false;
   private int maxRows = -1;
   private final @Language("js") String query;
   private int fetchSize = -1;
+  private int queryTimeout = 0;
+  private static final Object NOT_SET = new Object();
+  private final List<Object> parameters = new ArrayList<>();
+  private WriteBatch writeBatch;
+  private final List<List<Object>> parameterBatch = new ArrayList<>();
+  private final List<String> scriptBatch = new ArrayList<>();
 
   public MongoPreparedStatement(final MongoConnection connection) {
     this.connection = connection;
@@ -53,7 +66,8 @@ public class MongoPreparedStatement implements PreparedStatement {
     if (query == null) {
       throw new SQLException("Null statement.");
     }
-    return lastResultSet = connection.getScriptEngine().execute(query, fetchSize);
+    cancellation.reset();
+    return lastResultSet = connection.getScriptEngine().execute(query, getQueryOptions());
   }
 
 
@@ -74,16 +88,46 @@ public class MongoPreparedStatement implements PreparedStatement {
       //noinspection unchecked
       documentParam = new Document((Map<String, Object>) x);
     }
-    else if (x != null) {
-      throw new SQLException("Map object expected. You currently did setObject( " + x.getClass().getName() + " ) ");
+    if (x instanceof Timestamp || x instanceof Date || x instanceof Time) {
+      x = new java.util.Date(((java.util.Date) x).getTime());
     }
-    else {
-      throw new SQLException("Map object expected. You currently did setObject( NULL ) ");
+    setParameter(parameterIndex, x);
+  }
+
+  private void setParameter(int parameterIndex, Object x) throws SQLException {
+    checkClosed();
+    if (parameterIndex < 1) throw new SQLException("Invalid parameter index: " + parameterIndex);
+    while (parameters.size() < parameterIndex) parameters.add(NOT_SET);
+    parameters.set(parameterIndex - 1, x);
+  }
+
+  /**
+   * Executes the prepared query with {@code ?} placeholders bound to the parameters, or as is if no parameters are set.
+   */
+  private ResultSet executeWithParameters() throws SQLException {
+    checkClosed();
+    if (query == null) throw new SQLException("Null statement.");
+    if (parameters.isEmpty()) return executeQuery(query);
+    int unset = parameters.indexOf(NOT_SET);
+    if (unset != -1) throw new SQLException("No value specified for parameter " + (unset + 1));
+    if (lastResultSet != null && !lastResultSet.isClosed()) {
+      lastResultSet.close();
     }
+    cancellation.reset();
+    return lastResultSet = connection.getScriptEngine().execute(query, parameters, getQueryOptions());
+  }
+
+  private boolean hasPlaceholders() {
+    return query != null && !parameters.isEmpty() && query.indexOf('?') != -1 &&
+           !PATTERN_UPDATE.matcher(query.trim()).matches() && !PATTERN_DELETE.matcher(query.trim()).matches();
   }
 
   @Override
   public int executeUpdate() throws SQLException {
+    if (hasPlaceholders()) {
+      executeWithParameters();
+      return 1;
+    }
     return executeUpdate(query);
   }
 
@@ -188,8 +232,13 @@ public class MongoPreparedStatement implements PreparedStatement {
     return maxRows;
   }
 
+  /**
+   * Applied as the limit of queries run by the Java driver and of shell find cursors.
+   * Other result sets, including arrays returned by shell scripts and distinct values, are truncated to this many rows.
+   */
   @Override
-  public void setMaxRows(final int max) {
+  public void setMaxRows(final int max) throws SQLException {
+    if (max < 0) throw new SQLException("Max rows must be >= 0. Actual: " + max);
     this.maxRows = max;
   }
 
@@ -200,19 +249,34 @@ public class MongoPreparedStatement implements PreparedStatement {
   @Override
   public int getQueryTimeout() throws SQLException {
     checkClosed();
-    throw new SQLFeatureNotSupportedException("MongoDB provides no support for query timeouts.");
+    return queryTimeout;
   }
 
+  /**
+   * Sent as maxTimeMS with queries that are run by the Java driver. Scripts evaluated by the shell are interrupted.
+   */
   @Override
   public void setQueryTimeout(final int seconds) throws SQLException {
     checkClosed();
-    throw new SQLFeatureNotSupportedException("MongoDB provides no support for query timeouts.");
+    if (seconds < 0) throw new SQLException("Query timeout must be >= 0. Actual: " + seconds);
+    queryTimeout = seconds;
   }
 
+  private QueryOptions getQueryOptions() {
+    return new QueryOptions(fetchSize, queryTimeout, Math.max(maxRows, 0), connection.getPrefetchRows(),
+                            connection.isFlattenResults(), cancellation);
+  }
+
+  /**
+   * Kills the server operations of the running query and stops reading the current result set.
+   * Queries run by the Java driver are found by the comment of the statement. A script evaluated by the shell
+   * is interrupted and the sessions of the commands it sent are killed.
+   */
   @Override
   public void cancel() throws SQLException {
     checkClosed();
-    throw new SQLFeatureNotSupportedException("MongoDB provides no support for interrupting an operation.");
+    cancellation.cancel();
+    if (lastResultSet instanceof ResultSetIterator iterator) iterator.cancel();
   }
 
   @Override
@@ -280,17 +344,51 @@ public class MongoPreparedStatement implements PreparedStatement {
   }
 
   @Override
-  public void addBatch(final String sql) {
+  public void addBatch(final String sql) throws SQLException {
+    checkClosed();
+    if (query != null) throw new SQLException("addBatch(String) cannot be called on a PreparedStatement.");
+    if (sql == null) throw new SQLException("Null statement.");
+    scriptBatch.add(sql);
   }
 
   @Override
   public void clearBatch() {
+    writeBatch = null;
+    parameterBatch.clear();
+    scriptBatch.clear();
   }
 
+  /**
+   * Documents added for UPDATE and DELETE FROM statements are sent with one unordered bulkWrite
+   * (split by the server limits). Other statements are executed one by one.
+   */
   @Override
   public int[] executeBatch() throws SQLException {
     checkClosed();
-    return null;
+    cancellation.reset();
+    try {
+      if (writeBatch != null) return writeBatch.execute(connection.getService(), cancellation);
+      List<?> batch = query == null ? scriptBatch : parameterBatch;
+      int[] counts = new int[batch.size()];
+      for (int i = 0; i < counts.length; i++) {
+        Object item = batch.get(i);
+        try {
+          if (cancellation.isCancelled()) throw new SQLException("Statement was cancelled", Cancellation.SQL_STATE);
+          ResultSet resultSet = item instanceof String sql
+                                ? connection.getScriptEngine().execute(sql, getQueryOptions())
+                                : connection.getScriptEngine().execute(query, (List<?>) item, getQueryOptions());
+          if (resultSet != null) resultSet.close();
+          counts[i] = SUCCESS_NO_INFO;
+        }
+        catch (SQLException e) {
+          throw new BatchUpdateException(e.getMessage(), Arrays.copyOf(counts, i), e);
+        }
+      }
+      return counts;
+    }
+    finally {
+      clearBatch();
+    }
   }
 
   @Override
@@ -381,77 +479,77 @@ public class MongoPreparedStatement implements PreparedStatement {
 
   @Override
   public ResultSet executeQuery() throws SQLException {
-    execute(query);
-    return lastResultSet;
+    return executeWithParameters();
   }
 
   @Override
-  public void setNull(int parameterIndex, int sqlType) {
-
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    setParameter(parameterIndex, null);
   }
 
   @Override
-  public void setBoolean(int parameterIndex, boolean x) {
-
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setByte(int parameterIndex, byte x) {
-
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setShort(int parameterIndex, short x) {
-
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setInt(int parameterIndex, int x) {
-
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setLong(int parameterIndex, long x) {
-
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setFloat(int parameterIndex, float x) {
-
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setDouble(int parameterIndex, double x) {
-
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setBigDecimal(int parameterIndex, BigDecimal x) {
-
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+    setParameter(parameterIndex, x == null ? null : new Decimal128(x));
   }
 
   @Override
-  public void setString(int parameterIndex, String x) {
-
+  public void setString(int parameterIndex, String x) throws SQLException {
+    setParameter(parameterIndex, x);
   }
 
   @Override
-  public void setBytes(int parameterIndex, byte[] x) {
-
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    setParameter(parameterIndex, x == null ? null : new Binary(x));
   }
 
   @Override
-  public void setDate(int parameterIndex, Date x) {
-
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
-  public void setTime(int parameterIndex, Time x) {
-
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
-  public void setTimestamp(int parameterIndex, Timestamp x) {
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
@@ -468,21 +566,40 @@ public class MongoPreparedStatement implements PreparedStatement {
 
   @Override
   public void clearParameters() {
+    parameters.clear();
+    documentParam = null;
   }
 
   @Override
-  public void setObject(int parameterIndex, Object x, int targetSqlType) {
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
 
   @Override
   public boolean execute() throws SQLException {
-    return query != null && execute(query);
+    if (query == null) return false;
+    return executeWithParameters() != null;
   }
 
   @Override
-  public void addBatch() {
-
+  public void addBatch() throws SQLException {
+    checkClosed();
+    if (query == null) throw new SQLException("Null statement.");
+    Matcher update = PATTERN_UPDATE.matcher(query.trim());
+    Matcher delete = PATTERN_DELETE.matcher(query.trim());
+    if (update.matches() || delete.matches()) {
+      if (documentParam == null) throw new SQLException(ERROR_MESSAGE);
+      if (writeBatch == null) {
+        writeBatch = new WriteBatch(getCollectionMandatory(update.matches() ? update.group(1) : delete.group(1)));
+      }
+      if (update.matches()) writeBatch.addUpsert(documentParam);
+      else writeBatch.addDelete(documentParam);
+      return;
+    }
+    int unset = parameters.indexOf(NOT_SET);
+    if (unset != -1) throw new SQLException("No value specified for parameter " + (unset + 1));
+    parameterBatch.add(new ArrayList<>(parameters));
   }
 
   @Override
@@ -516,28 +633,28 @@ public class MongoPreparedStatement implements PreparedStatement {
   }
 
   @Override
-  public void setDate(int parameterIndex, Date x, Calendar cal) {
-
+  public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
-  public void setTime(int parameterIndex, Time x, Calendar cal) {
-
+  public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
-  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) {
-
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
-  public void setNull(int parameterIndex, int sqlType, String typeName) {
-
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+    setParameter(parameterIndex, null);
   }
 
   @Override
-  public void setURL(int parameterIndex, URL x) {
-
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    setParameter(parameterIndex, x == null ? null : x.toString());
   }
 
   @Override
@@ -551,8 +668,8 @@ public class MongoPreparedStatement implements PreparedStatement {
   }
 
   @Override
-  public void setNString(int parameterIndex, String value) {
-
+  public void setNString(int parameterIndex, String value) throws SQLException {
+    setParameter(parameterIndex, value);
   }
 
   @Override
@@ -586,8 +703,8 @@ public class MongoPreparedStatement implements PreparedStatement {
   }
 
   @Override
-  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) {
-
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+    setObject(parameterIndex, x);
   }
 
   @Override
@@ -5,10 +5,17 @@ import org.jetbrains.annotations.Nullable;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 public interface MongoScriptEngine {
   @Nullable
-  ResultSet execute(@NotNull String query, int fetchSize) throws SQLException;
+  ResultSet execute(@NotNull String query, @NotNull QueryOptions options) throws SQLException;
+
+  /**
+   * Executes a statement with {@code ?} placeholders replaced by the parameter values.
+   */
+  @Nullable
+  ResultSet execute(@NotNull String query, @NotNull List<?> parameters, @NotNull QueryOptions options) throws SQLException;
 
   void close();
 }
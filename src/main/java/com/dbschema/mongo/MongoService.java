@@ -1,35 +1,132 @@
 package com.dbschema.mongo;
 
 import com.dbschema.mongo.schema.MetaCollection;
+import com.dbschema.mongo.schema.MetaCollectionCache;
+import com.dbschema.mongo.schema.MetaCollectionDiskCache;
+import com.dbschema.mongo.schema.MetaCollectionDiskCache.Fingerprint;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.MongoNamespace;
 import com.mongodb.MongoSecurityException;
+import com.mongodb.client.ListCollectionsIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MongoService implements AutoCloseable {
-  private boolean isClosed = false;
+  private static final Executor DISCOVERY_EXECUTOR = runnable -> Thread.ofVirtual().name("MetaCollection Discovery").start(runnable);
+  private volatile boolean isClosed = false;
   private final MongoClientWrapper client;
   private final String uri;
   private final int fetchDocumentsForMeta;
+  private final int metadataConcurrency;
+  private final boolean inferSchemaOnServer;
+  private final MetaCollectionCache metaCollectionCache;
+  private final long statisticsTtlNanos;
+  private final Map<MongoNamespace, CachedStatistics> statistics = new ConcurrentHashMap<>();
+  private final AtomicLong statisticsPurgedAt = new AtomicLong(System.nanoTime());
+  private final @Nullable MetaCollectionWatcher metaCollectionWatcher;
+  private final @Nullable MetaCollectionDiskCache metaCollectionDiskCache;
+  private final Semaphore refreshPermits;
+  private volatile WriteLimits writeLimits;
+  // databases the user is authorized for, cached for database_list_ttl_ms
+  private final DatabaseNameCache databaseNames;
 
-  // USE STATIC SO OPENING A NEW CONNECTION WILL REMEMBER THIS
-  public static final List<String> createdDatabases = new ArrayList<>();
+  // databases without collections are not listed by the server, shared so a new connection to the cluster remembers them
+  private static final Map<String, Set<String>> CREATED_DATABASES = new ConcurrentHashMap<>();
+
+  /**
+   * No longer read, names added here could belong to any cluster.
+   *
+   * @deprecated use {@link #addCreatedDatabase(String)}, it remembers the database for its cluster only
+   */
+  @Deprecated(forRemoval = true)
+  public static final List<String> createdDatabases = new CopyOnWriteArrayList<>();
 
 
   public MongoService(@NotNull String uri, @NotNull Properties prop, @Nullable String username,
                       @Nullable String password, int fetchDocumentsForMeta) throws SQLException {
     this.uri = uri;
     this.fetchDocumentsForMeta = fetchDocumentsForMeta;
-    client = new MongoClientWrapper(uri, prop, username, password);
+    metadataConcurrency = getMetadataConcurrency(prop);
+    inferSchemaOnServer = "server".equalsIgnoreCase(prop.getProperty(DriverPropertyInfoHelper.SCHEMA_INFERENCE));
+    long metadataCacheTtl = getTtl(prop, DriverPropertyInfoHelper.METADATA_CACHE_TTL, DriverPropertyInfoHelper.METADATA_CACHE_TTL_DEFAULT);
+    metaCollectionCache = new MetaCollectionCache(metadataCacheTtl);
+    statisticsTtlNanos = TimeUnit.MILLISECONDS.toNanos(metadataCacheTtl);
+    MongoClientWrapper client = new MongoClientWrapper(uri, prop, username, password);
+    this.client = client;
+    databaseNames = new DatabaseNameCache(
+      getTtl(prop, DriverPropertyInfoHelper.DATABASE_LIST_TTL, DriverPropertyInfoHelper.DATABASE_LIST_TTL_DEFAULT),
+      client::listAuthorizedDatabaseNames, () -> getDatabaseNameFromUrl(client));
+    String schemaCacheDir = prop.getProperty(DriverPropertyInfoHelper.SCHEMA_CACHE_DIR);
+    MetaCollectionDiskCache diskCache = schemaCacheDir != null && !schemaCacheDir.isBlank()
+                                        ? new MetaCollectionDiskCache(Path.of(schemaCacheDir), uri + '\u0000' + username,
+                                                                      fetchDocumentsForMeta + (inferSchemaOnServer ? " server" : " client"))
+                                        : null;
+    metaCollectionDiskCache = diskCache;
+    metaCollectionWatcher = Boolean.parseBoolean(prop.getProperty(DriverPropertyInfoHelper.METADATA_CHANGE_STREAM))
+                            ? new MetaCollectionWatcher(metaCollectionCache, databaseNames::invalidate, namespace -> {
+                              if (diskCache != null) diskCache.delete(namespace.getDatabaseName(), namespace.getCollectionName());
+                            })
+                            : null;
+    refreshPermits = new Semaphore(metadataConcurrency);
+  }
+
+  private static int getMetadataConcurrency(@NotNull Properties prop) {
+    String str = prop.getProperty(DriverPropertyInfoHelper.METADATA_CONCURRENCY);
+    if (str != null) {
+      try {
+        return Math.max(1, Integer.parseInt(str));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
+    return DriverPropertyInfoHelper.METADATA_CONCURRENCY_DEFAULT;
+  }
+
+  private static long getTtl(@NotNull Properties prop, @NotNull String name, long defaultValue) {
+    String str = prop.getProperty(name);
+    if (str != null) {
+      try {
+        return Math.max(0, Long.parseLong(str));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Collections discovered for metadata, use it to invalidate collections changed by the application.
+   */
+  @NotNull
+  public MetaCollectionCache getMetaCollectionCache() {
+    return metaCollectionCache;
   }
 
   public MongoClientWrapper getClient() {
@@ -40,6 +137,7 @@ public class MongoService implements AutoCloseable {
   public void close() throws SQLAlreadyClosedException {
     checkClosed();
     isClosed = true;
+    if (metaCollectionWatcher != null) metaCollectionWatcher.close();
     client.close();
   }
 
@@ -49,23 +147,18 @@ public class MongoService implements AutoCloseable {
 
   public String getDatabaseNameFromUrl() throws SQLAlreadyClosedException {
     checkClosed();
+    return getDatabaseNameFromUrl(client);
+  }
+
+  @NotNull
+  private static String getDatabaseNameFromUrl(@NotNull MongoClientWrapper client) {
     return client.databaseNameFromUrl != null ? client.databaseNameFromUrl : "test";
   }
 
   public List<String> getDatabaseNames() throws SQLAlreadyClosedException {
     checkClosed();
-
-    final List<String> names = new ArrayList<>();
-    try {
-      // THIS OFTEN THROWS EXCEPTION BECAUSE OF MISSING RIGHTS. IN THIS CASE WE ONLY ADD CURRENT KNOWN DB.
-      for (String c : client.listDatabaseNames()) {
-        names.add(c);
-      }
-    }
-    catch (Throwable ex) {
-      names.add(getDatabaseNameFromUrl());
-    }
-    for (String str : createdDatabases) {
+    List<String> names = new ArrayList<>(databaseNames.get());
+    for (String str : getCreatedDatabases()) {
       if (!names.contains(str)) {
         names.add(str);
       }
@@ -73,6 +166,19 @@ public class MongoService implements AutoCloseable {
     return names;
   }
 
+  /**
+   * Remembers a database that was created on the cluster but may have no collections yet.
+   * Called when a shell script switches to a database with {@code use}.
+   */
+  public void addCreatedDatabase(@NotNull String name) {
+    getCreatedDatabases().add(name);
+  }
+
+  @NotNull
+  private Set<String> getCreatedDatabases() {
+    return CREATED_DATABASES.computeIfAbsent(client.cluster, cluster -> ConcurrentHashMap.newKeySet());
+  }
+
   public MongoDatabase getDatabase(String dbName) throws SQLAlreadyClosedException {
     checkClosed();
     return client.getDatabase(dbName);
@@ -86,9 +192,9 @@ public class MongoService implements AutoCloseable {
       return Collections.singletonList(client.getDatabase(plain));
     }
     List<MongoDatabase> databases = new ArrayList<>();
-    for (String databaseName : client.getMongoClient().listDatabaseNames()) {
+    for (String databaseName : getDatabaseNames()) {
       if (dbName.matches(databaseName)) {
-        databases.add(client.getMongoClient().getDatabase(databaseName));
+        databases.add(client.getDatabase(databaseName));
       }
     }
     return databases;
@@ -117,34 +223,294 @@ public class MongoService implements AutoCloseable {
     }
   }
 
+  /**
+   * Limits reported by {@code hello} that bulk writes have to respect.
+   * Defaults of the current servers are used if the command fails.
+   */
+  @NotNull
+  public WriteLimits getWriteLimits() throws SQLAlreadyClosedException {
+    checkClosed();
+    WriteLimits limits = writeLimits;
+    if (limits == null) {
+      limits = WriteLimits.DEFAULT;
+      try {
+        Document hello = client.getDatabase("admin").runCommand(new Document("hello", 1));
+        limits = new WriteLimits(hello.getInteger("maxWriteBatchSize", WriteLimits.DEFAULT.maxWriteBatchSize()),
+                                 hello.getInteger("maxBsonObjectSize", WriteLimits.DEFAULT.maxBsonObjectSize()));
+      }
+      catch (Throwable t) {
+        System.err.println("Cannot get write limits: " + t.getMessage());
+      }
+      writeLimits = limits;
+    }
+    return limits;
+  }
+
+  /**
+   * Kills the operations of the current user tagged with the comment.
+   */
+  public void killOperations(@NotNull String comment) throws SQLAlreadyClosedException {
+    checkClosed();
+    MongoDatabase admin = client.getDatabase("admin");
+    List<Document> pipeline = List.of(new Document("$currentOp", new Document()),
+                                      new Document("$match", new Document("command.comment", comment)));
+    for (Document operation : admin.aggregate(pipeline)) {
+      Object opId = operation.get("opid");
+      if (opId != null) admin.runCommand(new Document("killOp", 1).append("op", opId));
+    }
+  }
+
+  /**
+   * Kills the sessions and with them their operations and cursors, e.g. sessions collected by {@link #getSessionTracker()}.
+   */
+  public void killSessions(@NotNull Collection<BsonDocument> sessions) throws SQLAlreadyClosedException {
+    checkClosed();
+    if (sessions.isEmpty()) return;
+    client.getDatabase("admin").runCommand(new Document("killSessions", new ArrayList<>(sessions)));
+  }
+
+  @NotNull
+  public SessionTracker getSessionTracker() {
+    return client.sessionTracker;
+  }
+
+  /**
+   * Statistics of the collection and its indexes, cached for {@code metadata_cache_ttl_ms}.
+   * Empty statistics are returned if they can't be read, e.g. without the clusterMonitor role.
+   *
+   * @param cached false to read the statistics even if they are cached
+   */
+  @NotNull
+  public CollectionStatistics getCollectionStatistics(@NotNull String databaseName, @NotNull String collectionName,
+                                                      boolean cached) throws SQLAlreadyClosedException {
+    MongoCollection<Document> collection = getDatabase(databaseName).getCollection(collectionName);
+    MongoNamespace namespace = collection.getNamespace();
+    long now = System.nanoTime();
+    CachedStatistics entry = statistics.get(namespace);
+    if (cached && entry != null && now - entry.readAt() < statisticsTtlNanos) return entry.statistics();
+    CollectionStatistics result;
+    try {
+      result = CollectionStatistics.read(collection);
+    }
+    catch (Throwable ex) {
+      System.err.println("Cannot read statistics of " + namespace + ". " + ex);
+      result = CollectionStatistics.EMPTY;
+    }
+    if (statisticsTtlNanos > 0) {
+      statistics.put(namespace, new CachedStatistics(result, now));
+      purgeStatistics(now);
+    }
+    return result;
+  }
+
+  /**
+   * Drops expired statistics of collections that are not read anymore, at most once per time to live.
+   */
+  private void purgeStatistics(long now) {
+    long last = statisticsPurgedAt.get();
+    if (now - last < statisticsTtlNanos || !statisticsPurgedAt.compareAndSet(last, now)) return;
+    statistics.values().removeIf(entry -> now - entry.readAt() >= statisticsTtlNanos);
+  }
+
+  private record CachedStatistics(@NotNull CollectionStatistics statistics, long readAt) {
+  }
+
+  public record WriteLimits(int maxWriteBatchSize, int maxBsonObjectSize) {
+    public static final WriteLimits DEFAULT = new WriteLimits(100_000, 16 * 1024 * 1024);
+  }
+
+  @NotNull
+  public MetaCollection getMetaCollection(@NotNull String databaseName, @NotNull String collectionName) throws SQLAlreadyClosedException {
+    MongoDatabase database = getDatabase(databaseName);
+    watch(database);
+    MongoCollection<Document> collection = database.getCollection(collectionName);
+    return Objects.requireNonNull(metaCollectionCache.get(databaseName, collectionName, () -> sample(collection)));
+  }
 
   @NotNull
   public List<MetaCollection> getMetaCollections(@Nullable String databasePattern, @Nullable String collectionPattern) throws SQLAlreadyClosedException {
-    MongoNamePattern collectionName = MongoNamePattern.create(collectionPattern);
-    List<MongoDatabase> databases = getDatabases(MongoNamePattern.create(databasePattern));
     List<MetaCollection> collections = new ArrayList<>();
-    for (MongoDatabase database : databases) {
-      try {
-        String plainCollectionName = collectionName.asPlain();
-        if (plainCollectionName != null) {
-          MongoCollection<Document> collection = database.getCollection(plainCollectionName);
-          collections.add(new MetaCollection(collection, fetchDocumentsForMeta));
-        }
-        else {
-          for (String name : database.listCollectionNames()) {
-            if (collectionName.matches(name)) {
-              MongoCollection<Document> collection = database.getCollection(name);
-              collections.add(new MetaCollection(collection, fetchDocumentsForMeta));
-            }
-          }
+    iterateMetaCollections(databasePattern, collectionPattern).forEachRemaining(collections::add);
+    return collections;
+  }
+
+  /**
+   * Discovers matching collections while the iterator is advanced. Up to {@code metadata_concurrency} collections
+   * ahead of the one being read are sampled in parallel on virtual threads, so memory is bounded by this window.
+   * Collections are returned in the order they are listed, in name order within a database.
+   * Collections that cannot be discovered are skipped. Close the iterator to stop discoveries that are not read.
+   */
+  @NotNull
+  public DiscoveryIterator<MetaCollection> iterateMetaCollections(@Nullable String databasePattern, @Nullable String collectionPattern) throws SQLAlreadyClosedException {
+    MongoNamePattern collectionName = MongoNamePattern.create(collectionPattern);
+    Iterator<MongoDatabase> databases = getDatabases(MongoNamePattern.create(databasePattern)).iterator();
+    Iterator<Callable<MetaCollection>> discoveries = new Iterator<>() {
+      private Iterator<MongoCollection<Document>> collections = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!collections.hasNext()) {
+          if (!databases.hasNext()) return false;
+          MongoDatabase database = databases.next();
+          watch(database);
+          collections = getCollections(database, collectionName);
         }
+        return true;
+      }
+
+      @Override
+      public Callable<MetaCollection> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        MongoCollection<Document> collection = collections.next();
+        return () -> discover(collection);
+      }
+    };
+    return new DiscoveryIterator<>(discoveries, metadataConcurrency, DISCOVERY_EXECUTOR);
+  }
+
+  private void watch(@NotNull MongoDatabase database) {
+    if (metaCollectionWatcher != null) metaCollectionWatcher.watch(database);
+  }
+
+  @Nullable
+  private MetaCollection discover(@NotNull MongoCollection<Document> collection) {
+    MongoNamespace namespace = collection.getNamespace();
+    return metaCollectionCache.get(namespace.getDatabaseName(), namespace.getCollectionName(), () -> {
+      try {
+        return sample(collection);
+      }
+      catch (MongoInterruptedException ex) {
+        // the iterator was closed
+        return null;
       }
       catch (Throwable ex) {
-        System.err.println("Error discovering collection " + database + " " + collectionName + ". " + ex);
+        System.err.println("Error discovering collection " + namespace + ". " + ex);
         ex.printStackTrace();
+        return null;
       }
+    });
+  }
+
+  /**
+   * Samples the collection. With {@code schema_cache_dir} a collection saved by an earlier connection is returned
+   * at once and checked in background, it is sampled again and replaced in the cache if it has changed.
+   * Collections invalidated during this connection are always sampled, the saved file is replaced.
+   */
+  @NotNull
+  private MetaCollection sample(@NotNull MongoCollection<Document> collection) {
+    if (metaCollectionDiskCache == null) return new MetaCollection(collection, fetchDocumentsForMeta, inferSchemaOnServer);
+    MongoNamespace namespace = collection.getNamespace();
+    if (metaCollectionCache.getGeneration(namespace.getDatabaseName(), namespace.getCollectionName()) != 0) {
+      return sampleAndStore(metaCollectionDiskCache, collection);
+    }
+    MetaCollectionDiskCache.Stored stored = metaCollectionDiskCache.load(namespace.getDatabaseName(), namespace.getCollectionName());
+    if (stored == null) return sampleAndStore(metaCollectionDiskCache, collection);
+    DISCOVERY_EXECUTOR.execute(() -> refresh(metaCollectionDiskCache, collection, stored.fingerprint()));
+    return stored.collection();
+  }
+
+  @NotNull
+  private MetaCollection sampleAndStore(@NotNull MetaCollectionDiskCache diskCache, @NotNull MongoCollection<Document> collection) {
+    MongoNamespace namespace = collection.getNamespace();
+    // taken before sampling, so changes made meanwhile are detected by the next check
+    Fingerprint fingerprint = Fingerprint.of(client.getMongoClient().getDatabase(namespace.getDatabaseName()), collection);
+    MetaCollection metaCollection = new MetaCollection(collection, fetchDocumentsForMeta, inferSchemaOnServer);
+    if (fingerprint != null) diskCache.store(metaCollection, fingerprint);
+    else diskCache.delete(namespace.getDatabaseName(), namespace.getCollectionName());
+    return metaCollection;
+  }
+
+  private void refresh(@NotNull MetaCollectionDiskCache diskCache, @NotNull MongoCollection<Document> collection,
+                       @NotNull Fingerprint stored) {
+    if (isClosed) return;
+    MongoNamespace namespace = collection.getNamespace();
+    long generation = metaCollectionCache.getGeneration(namespace.getDatabaseName(), namespace.getCollectionName());
+    // refreshes of a large schema must not load the server more than a metadata call does
+    refreshPermits.acquireUninterruptibly();
+    try {
+      if (isClosed) return;
+      Fingerprint current = Fingerprint.of(client.getMongoClient().getDatabase(namespace.getDatabaseName()), collection);
+      if (current == null) {
+        // dropped since the schema was saved, the next lookup must not return it again
+        diskCache.delete(namespace.getDatabaseName(), namespace.getCollectionName());
+        metaCollectionCache.invalidate(namespace.getDatabaseName(), namespace.getCollectionName());
+        return;
+      }
+      if (current.equals(stored)) return;
+      metaCollectionCache.put(sampleAndStore(diskCache, collection), generation);
+    }
+    catch (Throwable ex) {
+      if (!isClosed) System.err.println("Cannot refresh cached collection " + namespace + ". " + ex);
+    }
+    finally {
+      refreshPermits.release();
+    }
+  }
+
+  @NotNull
+  private static Iterator<MongoCollection<Document>> getCollections(@NotNull MongoDatabase database, @NotNull MongoNamePattern collectionName) {
+    try {
+      String plainCollectionName = collectionName.asPlain();
+      if (plainCollectionName != null) {
+        return Collections.singletonList(database.getCollection(plainCollectionName)).iterator();
+      }
+      List<String> names = listCollectionNames(database, collectionName);
+      Collections.sort(names);
+      return names.stream().map(database::getCollection).iterator();
+    }
+    catch (Throwable ex) {
+      System.err.println("Error discovering collection " + database.getName() + " " + collectionName + ". " + ex);
+      ex.printStackTrace();
+      return Collections.emptyIterator();
+    }
+  }
+
+  /**
+   * Names of the collections that match the pattern, filtered by the server. Only names of collections
+   * the user is authorized for are requested, so the server doesn't read collection options.
+   * The driver doesn't support these options yet, so the command is run directly.
+   */
+  @NotNull
+  private static List<String> listCollectionNames(@NotNull MongoDatabase database, @NotNull MongoNamePattern pattern) {
+    Bson filter = pattern.toFilter("name");
+    Document command = new Document("listCollections", 1)
+      .append("nameOnly", true)
+      .append("authorizedCollections", true)
+      // names are small, all of them fit in the first batch unless there are hundreds of thousands
+      .append("cursor", new Document("batchSize", Integer.MAX_VALUE));
+    if (filter != null) command.append("filter", filter.toBsonDocument());
+    List<String> names = new ArrayList<>();
+    try {
+      // runCommand defaults to the primary, listCollections() of the driver follows the read preference
+      Document cursor = database.runCommand(command, database.getReadPreference()).get("cursor", Document.class);
+      long cursorId = ((Number) cursor.get("id")).longValue();
+      if (cursorId == 0) {
+        for (Document collection : cursor.getList("firstBatch", Document.class)) {
+          if (pattern.matches(collection.getString("name"))) names.add(collection.getString("name"));
+        }
+        return names;
+      }
+      killCursor(database, cursorId);
+    }
+    catch (MongoCommandException e) {
+      System.err.println("Cannot list collection names of " + database.getName() + " with nameOnly. " + e.getErrorMessage());
+    }
+    ListCollectionsIterable<Document> collections = database.listCollections();
+    if (filter != null) collections.filter(filter);
+    for (Document collection : collections) {
+      if (pattern.matches(collection.getString("name"))) names.add(collection.getString("name"));
+    }
+    return names;
+  }
+
+  private static void killCursor(@NotNull MongoDatabase database, long cursorId) {
+    try {
+      database.runCommand(new Document("killCursors", "$cmd.listCollections").append("cursors", List.of(cursorId)),
+                          database.getReadPreference());
+    }
+    catch (Throwable ignored) {
+      // the cursor times out on the server
     }
-    return collections;
   }
 
   public String getURI() {
@@ -153,14 +519,16 @@ public class MongoService implements AutoCloseable {
 
 
   public List<String> getCollectionNames(String catalog) throws SQLAlreadyClosedException {
+    return getCollectionNames(catalog, MongoNamePattern.create(null));
+  }
+
+  public List<String> getCollectionNames(String catalog, @NotNull MongoNamePattern collectionName) throws SQLAlreadyClosedException {
     checkClosed();
     List<String> list = new ArrayList<>();
     try {
       MongoDatabase db = client.getDatabase(catalog);
       if (db != null) {
-        for (String str : db.listCollectionNames()) {
-          list.add(str);
-        }
+        list.addAll(listCollectionNames(db, collectionName));
       }
       list.remove("system.indexes");
       list.remove("system.users");
@@ -0,0 +1,17 @@
+package com.dbschema.mongo;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Statement settings that apply to the execution of a query.
+ *
+ * @param fetchSize           number of documents fetched per batch, values below 2 mean the server default
+ * @param queryTimeoutSeconds maximum execution time, 0 means no limit
+ * @param maxRows             maximum number of rows in the result set, 0 means no limit
+ * @param prefetchRows        number of documents read ahead of the consumer by driver cursors, 0 disables prefetching
+ * @param flattenResults      return fields of found documents as separate columns instead of a single map column
+ * @param cancellation        cancellation of the statement that executes the query
+ */
+public record QueryOptions(int fetchSize, int queryTimeoutSeconds, int maxRows, int prefetchRows,
+                           boolean flattenResults, @NotNull Cancellation cancellation) {
+}
@@ -0,0 +1,46 @@
+package com.dbschema.mongo;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the sessions of commands sent by a thread, e.g. while it evaluates a shell script.
+ * The shell issues commands itself, so they can't be tagged with the comment of the statement,
+ * but the sessions can be killed with {@code killSessions} to stop them on the server.
+ * <p>
+ * The sync driver notifies listeners in the thread that sends the command.
+ */
+public final class SessionTracker implements CommandListener {
+  private final Map<Thread, Set<BsonDocument>> sessions = new ConcurrentHashMap<>();
+
+  /**
+   * Starts collecting sessions of the current thread.
+   *
+   * @return sessions of the commands the current thread sends until {@link #stop()}, safe to read from any thread
+   */
+  @NotNull
+  public Set<BsonDocument> start() {
+    Set<BsonDocument> result = ConcurrentHashMap.newKeySet();
+    sessions.put(Thread.currentThread(), result);
+    return result;
+  }
+
+  public void stop() {
+    sessions.remove(Thread.currentThread());
+  }
+
+  @Override
+  public void commandStarted(@NotNull CommandStartedEvent event) {
+    if (sessions.isEmpty()) return;
+    Set<BsonDocument> result = sessions.get(Thread.currentThread());
+    if (result == null) return;
+    BsonDocument lsid = event.getCommand().getDocument("lsid", null);
+    if (lsid != null) result.add(lsid);
+  }
+}
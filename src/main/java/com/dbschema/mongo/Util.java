@@ -2,6 +2,7 @@ package com.dbschema.mongo;
 
 import com.dbschema.mongo.resultSet.ListResultSet;
 import com.mongodb.AuthenticationMechanism;
+import com.mongodb.MongoExecutionTimeoutException;
 import kotlin.Pair;
 import org.bson.BsonDocument;
 import org.bson.BsonValue;
@@ -15,6 +16,8 @@ import org.jetbrains.annotations.Nullable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.*;
 import java.util.concurrent.ThreadFactory;
 import java.util.function.Function;
@@ -58,10 +61,18 @@ public class Util {
   }
 
   public static ResultSet ok(Object result) {
+    return ok(result, 0);
+  }
+
+  /**
+   * @param maxRows if positive, a list result is truncated to this many rows
+   */
+  public static ResultSet ok(Object result, int maxRows) {
     if (result instanceof Map<?, ?>) return ok((Map<?, ?>) result);
-    if (result instanceof List<?>) {
-      String name = Util.all((List<?>) result, o -> o instanceof Map) ? "map" : "result";
-      return new ListResultSet(Util.map((List<?>) result, o -> new Object[]{o}), new String[]{name});
+    if (result instanceof List<?> list) {
+      if (maxRows > 0 && list.size() > maxRows) list = list.subList(0, maxRows);
+      String name = Util.all(list, o -> o instanceof Map) ? "map" : "result";
+      return new ListResultSet(Util.map(list, o -> new Object[]{o}), new String[]{name});
     }
     return new ListResultSet(result, new String[]{"result"});
   }
@@ -74,6 +85,19 @@ public class Util {
     return new ListResultSet("ERROR", new String[]{"result"});
   }
 
+  /**
+   * Maps exceptions of the drivers and the shell, so callers can tell timeouts and cancellations from other errors.
+   *
+   * @param cancelled the statement was cancelled, the exception is likely caused by closing its cursor
+   */
+  @NotNull
+  public static SQLException toSQLException(@NotNull Exception e, boolean cancelled) {
+    if (e instanceof SQLException sqlException) return sqlException;
+    if (e instanceof MongoExecutionTimeoutException) return new SQLTimeoutException(e.getMessage(), e);
+    if (cancelled) return new SQLException("Statement was cancelled", Cancellation.SQL_STATE, e);
+    return new SQLException(e);
+  }
+
   @Contract(pure = true)
   public static <T> T find(@NotNull Iterable<? extends T> iterable, @NotNull Condition<? super T> condition) {
     return find(iterable.iterator(), condition);
@@ -0,0 +1,148 @@
+package com.dbschema.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Documents collected by {@link MongoPreparedStatement#addBatch()} for one collection.
+ * <p>
+ * Documents are encoded when they are added, so the size of every write is known. {@link #execute(MongoService, Cancellation)}
+ * sends them with unordered {@code bulkWrite}, split into chunks of at most {@code maxWriteBatchSize} writes
+ * and {@code maxBsonObjectSize} bytes.
+ */
+class WriteBatch {
+  private final MongoCollection<RawBsonDocument> collection;
+  private final Codec<Document> codec;
+  private final List<Row> rows = new ArrayList<>();
+
+  WriteBatch(@NotNull MongoCollection<Document> collection) {
+    this.collection = collection.withDocumentClass(RawBsonDocument.class);
+    codec = collection.getCodecRegistry().get(Document.class);
+  }
+
+  /**
+   * Inserts the document or replaces the document with the same {@code _id}, like UPDATE in {@link MongoPreparedStatement#executeUpdate(String)}.
+   */
+  void addUpsert(@NotNull Document document) {
+    RawBsonDocument raw = new RawBsonDocument(document, codec);
+    Object id = document.get("_id");
+    if (id == null) {
+      rows.add(new Row(new InsertOneModel<>(raw), size(raw), false));
+    }
+    else {
+      RawBsonDocument filter = new RawBsonDocument(new Document("_id", id), codec);
+      rows.add(new Row(new ReplaceOneModel<>(filter, raw, new ReplaceOptions().upsert(true)), size(raw) + size(filter), false));
+    }
+  }
+
+  void addDelete(@NotNull Document document) {
+    RawBsonDocument filter = new RawBsonDocument(new Document("_id", document.get("_id")), codec);
+    rows.add(new Row(new DeleteOneModel<>(filter), size(filter), true));
+  }
+
+  /**
+   * @return update count of every row: 1 for inserts and upserts, 1 or {@link Statement#SUCCESS_NO_INFO} for deletes
+   * @throws BatchUpdateException if some rows failed or the statement was cancelled, failed rows have {@link Statement#EXECUTE_FAILED} count
+   */
+  int @NotNull [] execute(@NotNull MongoService service, @NotNull Cancellation cancellation) throws SQLException {
+    MongoService.WriteLimits limits = service.getWriteLimits();
+    int[] counts = new int[rows.size()];
+    List<String> errors = new ArrayList<>();
+    Throwable cause = null;
+    int start = 0;
+    cancellation.onCancel(() -> {
+      try {
+        service.killOperations(cancellation.getComment());
+      }
+      catch (Throwable t) {
+        System.err.println("Cannot kill operations of the cancelled statement: " + t.getMessage());
+      }
+    });
+    while (start < rows.size()) {
+      if (cancellation.isCancelled()) {
+        Arrays.fill(counts, start, counts.length, Statement.EXECUTE_FAILED);
+        errors.add("Statement was cancelled");
+        cause = new SQLException("Statement was cancelled", Cancellation.SQL_STATE);
+        break;
+      }
+      int end = chunkEnd(start, limits);
+      List<WriteModel<RawBsonDocument>> models = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        models.add(rows.get(i).model());
+      }
+      try {
+        fillCounts(counts, start, end, collection.bulkWrite(models, new BulkWriteOptions().ordered(false).comment(cancellation.getComment())), Set.of());
+      }
+      catch (MongoBulkWriteException e) {
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+          failed.add(error.getIndex());
+          errors.add("Row " + (start + error.getIndex() + 1) + ": " + error.getMessage());
+        }
+        fillCounts(counts, start, end, e.getWriteResult(), failed);
+        if (e.getWriteConcernError() != null) errors.add(e.getWriteConcernError().getMessage());
+        if (cause == null) cause = e;
+      }
+      catch (RuntimeException e) {
+        // the rest of the batch is not sent, most likely it would fail the same way
+        Arrays.fill(counts, start, counts.length, Statement.EXECUTE_FAILED);
+        errors.add(e.getMessage());
+        cause = e;
+        break;
+      }
+      start = end;
+    }
+    cancellation.onCancel(null);
+    rows.clear();
+    if (cause != null) throw new BatchUpdateException(String.join("\n", errors), counts, cause);
+    return counts;
+  }
+
+  int chunkEnd(int start, @NotNull MongoService.WriteLimits limits) {
+    int end = start;
+    long bytes = 0;
+    while (end < rows.size() && end - start < limits.maxWriteBatchSize()) {
+      bytes += rows.get(end).size();
+      // a single document larger than the limit is still sent on its own and rejected by the server
+      if (bytes > limits.maxBsonObjectSize() && end > start) break;
+      end++;
+    }
+    return end;
+  }
+
+  void fillCounts(int[] counts, int start, int end, @NotNull BulkWriteResult result, @NotNull Set<Integer> failed) {
+    int deletes = 0;
+    for (int i = start; i < end; i++) {
+      if (rows.get(i).isDelete() && !failed.contains(i - start)) deletes++;
+    }
+    boolean allDeleted = result.wasAcknowledged() && result.getDeletedCount() == deletes;
+    for (int i = start; i < end; i++) {
+      if (failed.contains(i - start)) counts[i] = Statement.EXECUTE_FAILED;
+      else if (!result.wasAcknowledged() || (rows.get(i).isDelete() && !allDeleted)) counts[i] = Statement.SUCCESS_NO_INFO;
+      else counts[i] = 1;
+    }
+  }
+
+  private static int size(@NotNull RawBsonDocument document) {
+    return document.getByteBuffer().remaining();
+  }
+
+  private record Row(@NotNull WriteModel<RawBsonDocument> model, int size, boolean isDelete) {
+  }
+}
@@ -0,0 +1,45 @@
+package com.dbschema.mongo.mongosh;
+
+import com.dbschema.mongo.MongoConnection;
+import com.mongodb.mongosh.MongoShell;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Keeps one shell per connection and can release it after it has not been used for a while.
+ * The next {@link #getShell(MongoConnection)} then creates a new shell and switches it to the current database.
+ */
+public abstract class AbstractShellHolder extends UsageTrackingHolder<MongoShell> implements ShellHolder {
+  private @Nullable ScheduledFuture<?> idleCheck;
+
+  protected AbstractShellHolder() {
+    super(System::nanoTime);
+  }
+
+  @NotNull
+  protected abstract MongoShell createShell(@NotNull MongoConnection connection) throws SQLException;
+
+  @Override
+  @NotNull
+  public MongoShell getShell(@NotNull MongoConnection connection) throws SQLException {
+    return getShell(() -> createShell(connection));
+  }
+
+  /**
+   * Periodically releases the shell once it has been unused for {@code idleTimeoutMillis}.
+   */
+  public synchronized void releaseWhenIdle(@NotNull IdleShellReleaser releaser, long idleTimeoutMillis) {
+    if (idleCheck != null) idleCheck.cancel(false);
+    idleCheck = releaser.watch(this, idleTimeoutMillis);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (idleCheck != null) idleCheck.cancel(false);
+    idleCheck = null;
+    super.close();
+  }
+}
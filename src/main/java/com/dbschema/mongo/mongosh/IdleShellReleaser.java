@@ -0,0 +1,46 @@
+package com.dbschema.mongo.mongosh;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dbschema.mongo.Util.newNamedThreadFactory;
+
+/**
+ * Driver-wide timer that closes the shells of connections which have not evaluated anything for a while.
+ */
+public class IdleShellReleaser {
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(newNamedThreadFactory("MongoShell Idle Releaser"));
+  private final AtomicLong released = new AtomicLong();
+
+  @NotNull
+  ScheduledFuture<?> watch(@NotNull UsageTrackingHolder<?> holder, long idleTimeoutMillis) {
+    long period = Math.max(1000, idleTimeoutMillis / 2);
+    return scheduler.scheduleWithFixedDelay(() -> check(holder, idleTimeoutMillis), period, period, TimeUnit.MILLISECONDS);
+  }
+
+  void check(@NotNull UsageTrackingHolder<?> holder, long idleTimeoutMillis) {
+    try {
+      if (holder.releaseIfIdle(idleTimeoutMillis)) released.incrementAndGet();
+    }
+    catch (Throwable t) {
+      System.err.println("Cannot release idle MongoShell. " + t);
+    }
+  }
+
+  /**
+   * Number of shells released because their connections were idle.
+   */
+  public long getReleasedShellCount() {
+    return released.get();
+  }
+
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
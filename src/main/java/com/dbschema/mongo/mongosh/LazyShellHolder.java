@@ -4,30 +4,19 @@ import com.dbschema.mongo.MongoConnection;
 import com.mongodb.mongosh.MongoShell;
 import org.jetbrains.annotations.NotNull;
 
-public class LazyShellHolder implements ShellHolder {
-  private MongoShell shell;
-
+public class LazyShellHolder extends AbstractShellHolder {
   @Override
   @NotNull
-  public synchronized MongoShell getShell(@NotNull MongoConnection connection) {
-    if (shell == null) {
-      // disable warning about not available runtime compilation
-      System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
-      shell = new MongoShell(connection.getService().getMongoClient(), null);
-      shell.eval("use " + connection.getSchema());
-    }
+  protected MongoShell createShell(@NotNull MongoConnection connection) {
+    // disable warning about not available runtime compilation
+    System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
+    MongoShell shell = new MongoShell(connection.getService().getMongoClient(), null);
+    shell.eval("use " + connection.getSchema());
     return shell;
   }
 
   @Override
-  public synchronized void recreateShell() {
-    if (shell == null) return;
+  protected void disposeShell(@NotNull MongoShell shell) {
     shell.close();
-    shell = null;
-  }
-
-  @Override
-  public synchronized void close() {
-    if (shell != null) shell.close();
   }
 }
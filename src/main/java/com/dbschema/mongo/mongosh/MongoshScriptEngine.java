@@ -1,27 +1,63 @@
 package com.dbschema.mongo.mongosh;
 
+import com.dbschema.mongo.Cancellation;
 import com.dbschema.mongo.MongoConnection;
 import com.dbschema.mongo.MongoScriptEngine;
+import com.dbschema.mongo.QueryOptions;
+import com.dbschema.mongo.SessionTracker;
+import com.dbschema.mongo.Util;
+import com.dbschema.mongo.nativeQuery.NativeQuery;
+import com.dbschema.mongo.nativeQuery.NativeQueryParser;
+import com.dbschema.mongo.resultSet.DocumentColumns;
 import com.dbschema.mongo.resultSet.ResultSetIterator;
+import com.dbschema.mongo.schema.MetaCollection;
+import com.dbschema.mongo.schema.MetaCollectionCache;
 import com.mongodb.mongosh.MongoShell;
 import com.mongodb.mongosh.result.*;
+import org.bson.BsonDocument;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.dbschema.mongo.Util.newNamedThreadFactory;
 import static com.dbschema.mongo.Util.ok;
 import static com.dbschema.mongo.Util.trimEnd;
 
 public class MongoshScriptEngine implements MongoScriptEngine {
   private static final Pattern USE_DATABASE = Pattern.compile("use\\s+(.*)", Pattern.CASE_INSENSITIVE);
   private static final Pattern CLEAR_CONTEXT = Pattern.compile("clearContext\\s*\\(\\s*\\)\\s*;?");
+  private static final int STATEMENT_CACHE_SIZE_DEFAULT = 256;
+  private static final int RUNNING = 0;
+  private static final int FINISHED = 1;
+  private static final int TIMED_OUT = 2;
+  private static final int CANCELLED = 3;
+  private static final ScheduledExecutorService TIMEOUT_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(newNamedThreadFactory("MongoShell Query Timeout"));
   private final MongoConnection connection;
   private final ShellHolder shellHolder;
+  private final boolean nativeQueriesEnabled = !"true".equals(System.getProperty("mongosh.disableNativeQueries"));
+  private final StatementCache<Statement> statementCache = new StatementCache<>(getStatementCacheSize());
+  private final StatementCache<ParameterizedQuery> parameterizedCache = new StatementCache<>(getStatementCacheSize());
+  /**
+   * Columns of collections for {@link QueryOptions#flattenResults()}, rebuilt when the service discovers the collection again
+   * or, if the metadata cache is disabled, when the collection is invalidated.
+   */
+  private final Map<String, CollectionColumns> documentColumns = new ConcurrentHashMap<>();
 
   public MongoshScriptEngine(@NotNull MongoConnection connection, @NotNull ShellHolder holder) {
     this.connection = connection;
@@ -30,43 +66,236 @@ public class MongoshScriptEngine implements MongoScriptEngine {
 
   @Nullable
   @Override
-  public ResultSet execute(@Language("js") @NotNull String query, int fetchSize) throws SQLException {
+  public ResultSet execute(@Language("js") @NotNull String query, @NotNull QueryOptions options) throws SQLException {
     try {
-      if (CLEAR_CONTEXT.matcher(query.trim()).matches()) {
+      Statement statement = statementCache.get(trimEnd(query.trim(), ';').trim(), this::analyze);
+      if (statement.clearContext()) {
         shellHolder.recreateShell();
         return null;
       }
-      Matcher useCommand = USE_DATABASE.matcher(trimEnd(query.trim(), ';').trim());
-      if (useCommand.matches()) {
-        String db = useCommand.group(1);
-        if ((db.startsWith("\"") && db.endsWith("\"")) || (db.startsWith("'") && db.endsWith("'"))) {
-          db = db.substring(1, db.length() - 1);
-        }
-        query = "use " + db.trim();
+      if (statement.nativeQuery() != null) {
+        return executeNative(statement.nativeQuery(), options);
+      }
+      return evaluate(statement.script() != null ? statement.script() : query, options);
+    }
+    catch (Exception e) {
+      throw toSQLException(e, options);
+    }
+  }
+
+  @Nullable
+  @Override
+  public ResultSet execute(@Language("js") @NotNull String query, @NotNull List<?> parameters, @NotNull QueryOptions options) throws SQLException {
+    ParameterizedQuery parameterized = parameterizedCache.get(query, ParameterizedQuery::parse);
+    if (parameterized.getParameterCount() == 0) return execute(query, options);
+    try {
+      NativeQuery nativeQuery = nativeQueriesEnabled ? parameterized.bindNativeQuery(parameters) : null;
+      if (nativeQuery != null) {
+        return executeNative(nativeQuery, options);
       }
-      MongoShell repl = shellHolder.getShell(connection);
-      MongoShellResult<?> result = repl.eval(query);
+      return evaluate(parameterized.render(parameters), options);
+    }
+    catch (Exception e) {
+      throw toSQLException(e, options);
+    }
+  }
+
+  @NotNull
+  private static SQLException toSQLException(@NotNull Exception e, @NotNull QueryOptions options) {
+    return Util.toSQLException(e, options.cancellation().isCancelled());
+  }
+
+  /**
+   * Runs the query with the Java driver. Cancelling the statement kills the server operations tagged with its comment.
+   */
+  @NotNull
+  private ResultSet executeNative(@NotNull NativeQuery nativeQuery, @NotNull QueryOptions options) throws SQLException {
+    Cancellation cancellation = options.cancellation();
+    cancellation.onCancel(() -> killOperations(cancellation.getComment()));
+    try {
+      String databaseName = connection.getSchema();
+      DocumentColumns columns = options.flattenResults() && nativeQuery.returnsCollectionDocuments()
+                                ? getDocumentColumns(databaseName, nativeQuery.getCollectionName())
+                                : null;
+      return nativeQuery.execute(connection.getService().getDatabase(databaseName), options, columns);
+    }
+    finally {
+      cancellation.onCancel(null);
+    }
+  }
+
+  /**
+   * @return columns of the collection or null if no documents were sampled, e.g. the collection is empty
+   */
+  @Nullable
+  private DocumentColumns getDocumentColumns(@NotNull String databaseName, @NotNull String collectionName) throws SQLException {
+    String key = databaseName + "." + collectionName;
+    MetaCollectionCache cache = connection.getService().getMetaCollectionCache();
+    long generation = cache.getGeneration(databaseName, collectionName);
+    CollectionColumns columns = documentColumns.get(key);
+    // without the metadata cache every lookup samples the collection, columns are kept until it is invalidated instead
+    if (columns != null && !cache.isEnabled() && columns.generation() == generation) return columns.columns();
+    MetaCollection collection = connection.getService().getMetaCollection(databaseName, collectionName);
+    if (columns == null || columns.collection() != collection) {
+      columns = new CollectionColumns(collection, generation, DocumentColumns.of(collection));
+      documentColumns.put(key, columns);
+    }
+    return columns.columns();
+  }
+
+  private void killOperations(@NotNull String comment) {
+    try {
+      connection.getService().killOperations(comment);
+    }
+    catch (Throwable t) {
+      System.err.println("Cannot kill operations of the cancelled statement: " + t.getMessage());
+    }
+  }
+
+  private void killSessions(@NotNull Set<BsonDocument> sessions) {
+    try {
+      connection.getService().killSessions(sessions);
+    }
+    catch (Throwable t) {
+      System.err.println("Cannot kill sessions of the cancelled statement: " + t.getMessage());
+    }
+  }
+
+  /**
+   * Evaluates the script in the shell. If the statement is cancelled or the query timeout elapses first,
+   * the sessions used by the script are killed on the server and the shell context is closed,
+   * which stops the evaluation (user variables are lost, as with clearContext()).
+   */
+  @Nullable
+  private ResultSet evaluate(@NotNull String script, @NotNull QueryOptions options) throws SQLException {
+    MongoShell repl = shellHolder.getShell(connection);
+    SessionTracker sessionTracker = connection.getService().getSessionTracker();
+    Set<BsonDocument> sessions = sessionTracker.start();
+    AtomicInteger state = new AtomicInteger(RUNNING);
+    ScheduledFuture<?> watchdog = options.queryTimeoutSeconds() > 0
+                                  ? TIMEOUT_SCHEDULER.schedule(() -> interrupt(state, TIMED_OUT, sessions), options.queryTimeoutSeconds(), TimeUnit.SECONDS)
+                                  : null;
+    options.cancellation().onCancel(() -> interrupt(state, CANCELLED, sessions));
+    boolean returnShell = true;
+    try {
+      MongoShellResult<?> result = repl.eval(script);
       if (result instanceof CursorResult) {
         Cursor<?> cursor = ((CursorResult<?>) result).getValue();
-        if (fetchSize > 1 && cursor instanceof FindCursor) {
-          ((FindCursor<?>) cursor).batchSize(fetchSize);
+        if (cursor instanceof FindCursor<?> findCursor) {
+          // the cursor is not sent to the server yet, so the first batch need not be larger than max rows
+          int batchSize = options.fetchSize() > 1 ? options.fetchSize() : 0;
+          if (options.maxRows() > 0 && (batchSize == 0 || options.maxRows() < batchSize)) batchSize = options.maxRows();
+          if (batchSize > 0) findCursor.batchSize(batchSize);
         }
-        return new ResultSetIterator(cursor);
+        checkInterrupted(state, options, null);
+        // the cursor lives in the shell context, so the shell stays in use until the result set is closed
+        returnShell = false;
+        return new ResultSetIterator(cursor, options.maxRows(), () -> shellHolder.returnShell(repl));
+      }
+      MongoShellResult<?> db = repl.eval("db");
+      checkInterrupted(state, options, null);
+      if (db instanceof StringResult) {
+        String schema = ((StringResult) db).getValue();
+        // the server doesn't list a database switched to with `use` until it has collections
+        if (!schema.equals(connection.getSchema())) connection.getService().addCreatedDatabase(schema);
+        connection.setSchema(schema);
       }
-      MongoShellResult<?> db = shellHolder.getShell(connection).eval("db");
-      if (db instanceof StringResult) connection.setSchema(((StringResult) db).getValue());
       return result instanceof VoidResult || result instanceof BulkWriteResult || result instanceof InsertOneResult ||
                  result instanceof InsertManyResult || result instanceof MongoShellUpdateResult
              ? null
-             : ok(result.getValue());
+             : ok(result.getValue(), options.maxRows());
     }
-    catch (Exception e) {
-      throw new SQLException(e);
+    catch (RuntimeException e) {
+      checkInterrupted(state, options, e);
+      throw e;
+    }
+    finally {
+      sessionTracker.stop();
+      options.cancellation().onCancel(null);
+      if (watchdog != null) watchdog.cancel(false);
+      if (returnShell) shellHolder.returnShell(repl);
+    }
+  }
+
+  private void interrupt(@NotNull AtomicInteger state, int reason, @NotNull Set<BsonDocument> sessions) {
+    // closing a context waits for the evaluation to stop, so don't block the calling thread
+    if (state.compareAndSet(RUNNING, reason)) {
+      Thread.ofVirtual().start(() -> {
+        // the command the script waits for fails, so the evaluation stops sooner
+        killSessions(sessions);
+        shellHolder.recreateShell();
+      });
+    }
+  }
+
+  private static void checkInterrupted(@NotNull AtomicInteger state, @NotNull QueryOptions options, @Nullable Throwable cause)
+    throws SQLException {
+    if (state.compareAndSet(RUNNING, FINISHED)) return;
+    if (state.get() == CANCELLED) throw new SQLException("Statement was cancelled", Cancellation.SQL_STATE, cause);
+    throw new SQLTimeoutException("Query was cancelled after " + options.queryTimeoutSeconds() + " seconds timeout", cause);
+  }
+
+  @NotNull
+  private Statement analyze(@NotNull String query) {
+    if (CLEAR_CONTEXT.matcher(query).matches()) return new Statement(true, null, null);
+    NativeQuery nativeQuery = nativeQueriesEnabled ? NativeQueryParser.parse(query) : null;
+    if (nativeQuery != null) return new Statement(false, nativeQuery, null);
+    Matcher useCommand = USE_DATABASE.matcher(query);
+    if (useCommand.matches()) {
+      String db = useCommand.group(1);
+      if ((db.startsWith("\"") && db.endsWith("\"")) || (db.startsWith("'") && db.endsWith("'"))) {
+        db = db.substring(1, db.length() - 1);
+      }
+      return new Statement(false, null, "use " + db.trim());
     }
+    return new Statement(false, null, null);
+  }
+
+  /**
+   * Statements analyzed by this engine. Exposes hit/miss counters.
+   */
+  @NotNull
+  public StatementCache<?> getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Statements with parameter placeholders analyzed by this engine.
+   */
+  @NotNull
+  public StatementCache<?> getParameterizedStatementCache() {
+    return parameterizedCache;
   }
 
   @Override
   public void close() {
     shellHolder.close();
   }
+
+  private static int getStatementCacheSize() {
+    String value = System.getProperty("mongosh.statementCacheSize");
+    if (value == null) return STATEMENT_CACHE_SIZE_DEFAULT;
+    try {
+      return Integer.parseInt(value.trim());
+    }
+    catch (NumberFormatException e) {
+      System.err.println("Invalid value of mongosh.statementCacheSize: " + value);
+      return STATEMENT_CACHE_SIZE_DEFAULT;
+    }
+  }
+
+  /**
+   * @param generation {@link MetaCollectionCache#getGeneration(String, String)} read before the collection was discovered
+   */
+  private record CollectionColumns(@NotNull MetaCollection collection, long generation, @Nullable DocumentColumns columns) {
+  }
+
+  /**
+   * Result of analyzing statement text.
+   *
+   * @param nativeQuery not null if the statement can be run without the shell
+   * @param script      rewritten script to evaluate instead of the original text
+   */
+  private record Statement(boolean clearContext, @Nullable NativeQuery nativeQuery, @Nullable String script) {
+  }
 }
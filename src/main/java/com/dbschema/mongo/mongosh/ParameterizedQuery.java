@@ -0,0 +1,166 @@
+package com.dbschema.mongo.mongosh;
+
+import com.dbschema.mongo.nativeQuery.NativeQuery;
+import com.dbschema.mongo.nativeQuery.NativeQueryParser;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Statement text with {@code ?} parameter placeholders, e.g. {@code db.coll.find({name: ?, age: {$gt: ?}})}.
+ * <p>
+ * The text is scanned once. Placeholders inside strings, comments and regular expressions are ignored,
+ * as well as {@code ?.}, {@code ??} and conditional operators, i.e. a {@code ?} that follows an operand as in {@code x ? 1 : 2}. If the statement is supported by {@link NativeQueryParser},
+ * parameters are bound into the parsed query as BSON values, otherwise they are rendered as shell literals.
+ */
+public final class ParameterizedQuery {
+  private static final JsonWriterSettings SHELL_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.SHELL).build();
+  private static final Codec<Document> CODEC = new DocumentCodec().withUuidRepresentation(UuidRepresentation.STANDARD);
+  // an operand, e.g. a regular expression or a placeholder, starts after these chars and keywords
+  private static final String OPERAND_PRECEDING_CHARS = "(,:[{=!&|?;+-*%<>~^";
+  private static final Set<String> OPERAND_PRECEDING_KEYWORDS = Set.of("return", "typeof", "void", "case", "in", "of",
+                                                                      "throw", "yield", "await");
+
+  private final String query;
+  private final int[] placeholders;
+  private final @Nullable NativeQuery nativeTemplate;
+
+  private ParameterizedQuery(@NotNull String query, int[] placeholders) {
+    this.query = query;
+    this.placeholders = placeholders;
+    nativeTemplate = placeholders.length == 0 ? null : NativeQueryParser.parse(substitute(NativeQuery::parameterPlaceholder));
+  }
+
+  @NotNull
+  public static ParameterizedQuery parse(@NotNull String query) {
+    List<Integer> placeholders = new ArrayList<>();
+    char previous = 0;
+    int length = query.length();
+    for (int i = 0; i < length; i++) {
+      char c = query.charAt(i);
+      char next = i + 1 < length ? query.charAt(i + 1) : 0;
+      switch (c) {
+        case '"', '\'', '`' -> i = skipQuoted(query, i, c);
+        case '/' -> {
+          if (next == '/') {
+            int end = query.indexOf('\n', i);
+            i = end == -1 ? length : end;
+            continue;
+          }
+          if (next == '*') {
+            int end = query.indexOf("*/", i + 2);
+            i = end == -1 ? length : end + 1;
+            continue;
+          }
+          if (startsOperand(query, i, previous)) i = skipRegex(query, i);
+        }
+        case '?' -> {
+          if (next == '.' || next == '?') i++;
+          else if (startsOperand(query, i, previous)) placeholders.add(i);
+        }
+        default -> {
+        }
+      }
+      if (!Character.isWhitespace(c)) previous = c;
+    }
+    return new ParameterizedQuery(query, placeholders.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /**
+   * @param previous last char before {@code index} that is not whitespace, 0 if there is none
+   */
+  private static boolean startsOperand(@NotNull String query, int index, char previous) {
+    if (previous == 0 || OPERAND_PRECEDING_CHARS.indexOf(previous) != -1) return true;
+    if (!Character.isJavaIdentifierPart(previous)) return false;
+    int end = index;
+    while (Character.isWhitespace(query.charAt(end - 1))) end--;
+    int start = end;
+    while (start > 0 && Character.isJavaIdentifierPart(query.charAt(start - 1))) start--;
+    if (start > 0 && query.charAt(start - 1) == '.') return false;
+    return OPERAND_PRECEDING_KEYWORDS.contains(query.substring(start, end));
+  }
+
+  public int getParameterCount() {
+    return placeholders.length;
+  }
+
+  /**
+   * Query with parameters bound as BSON values or null if the statement has to be evaluated by the shell.
+   */
+  @Nullable
+  public NativeQuery bindNativeQuery(@NotNull List<?> parameters) throws SQLException {
+    checkParameters(parameters);
+    if (nativeTemplate == null) return null;
+    try {
+      return nativeTemplate.bind(parameters);
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Script with parameters substituted as shell literals.
+   */
+  @NotNull
+  public String render(@NotNull List<?> parameters) throws SQLException {
+    checkParameters(parameters);
+    return substitute(index -> toShellLiteral(parameters.get(index)));
+  }
+
+  @NotNull
+  static String toShellLiteral(@Nullable Object value) {
+    String json = new Document("v", value).toJson(SHELL_SETTINGS, CODEC);
+    return json.substring("{\"v\": ".length(), json.length() - 1);
+  }
+
+  private void checkParameters(@NotNull List<?> parameters) throws SQLException {
+    if (parameters.size() < placeholders.length) {
+      throw new SQLException("No value specified for parameter " + (parameters.size() + 1));
+    }
+  }
+
+  @NotNull
+  private String substitute(@NotNull IntFunction<String> replacement) {
+    StringBuilder sb = new StringBuilder(query.length() + placeholders.length * 16);
+    int last = 0;
+    for (int i = 0; i < placeholders.length; i++) {
+      sb.append(query, last, placeholders[i]).append(replacement.apply(i));
+      last = placeholders[i] + 1;
+    }
+    return sb.append(query, last, query.length()).toString();
+  }
+
+  private static int skipQuoted(@NotNull String query, int start, char quote) {
+    for (int i = start + 1; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c == '\\') i++;
+      else if (c == quote) return i;
+    }
+    return query.length();
+  }
+
+  private static int skipRegex(@NotNull String query, int start) {
+    boolean inClass = false;
+    for (int i = start + 1; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c == '\\') i++;
+      else if (c == '[') inClass = true;
+      else if (c == ']') inClass = false;
+      else if (c == '/' && !inClass) return i;
+      else if (c == '\n') return i;
+    }
+    return query.length();
+  }
+}
@@ -7,9 +7,14 @@ import org.jetbrains.annotations.NotNull;
 import java.sql.SQLException;
 
 public interface ShellHolder {
+  /**
+   * Every call must be paired with {@link #returnShell(MongoShell)} once the shell (or a cursor opened with it) is no longer used.
+   */
   @NotNull
   MongoShell getShell(@NotNull MongoConnection connection) throws SQLException;
 
+  void returnShell(@NotNull MongoShell shell);
+
   void recreateShell();
 
   void close();
@@ -0,0 +1,276 @@
+package com.dbschema.mongo.mongosh;
+
+import com.mongodb.mongosh.MongoShell;
+import org.graalvm.polyglot.Engine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.dbschema.mongo.Util.newNamedThreadFactory;
+
+/**
+ * Driver-wide pool of warmed up {@link MongoShell} instances.
+ * <p>
+ * A borrowed shell gets bound to a connection (client, current database, user variables), so it is never handed
+ * out twice: {@link #release(MongoShell)} closes it and lets the pool warm up a replacement in the background.
+ * The pool keeps at least {@code minIdle} shells ready, warms up more while there are waiting borrowers
+ * (never holding more than {@code maxSize} idle or warming shells) and closes shells that stay idle longer than
+ * {@code idleTimeoutMillis} above the {@code minIdle} level.
+ *
+ * @param <S> type of pooled shells, {@link MongoShell} created by {@link MongoShellFactory} outside of tests
+ */
+public final class ShellPool<S> {
+  private final ExecutorService executorService;
+  private final ShellFactory<S> factory;
+  private final LongSupplier clock;
+  private final int minIdle;
+  private final int maxSize;
+  private final long idleTimeoutMillis;
+  private final @Nullable ScheduledExecutorService evictor;
+  private final Deque<IdleShell<S>> idle = new ArrayDeque<>();
+  private int warmingUp;
+  private int waiters;
+  private @Nullable Throwable lastFailure;
+  private boolean isClosed;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong waitTimeNanos = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+
+  public ShellPool(@NotNull ExecutorService executorService, @NotNull ShellFactory<S> factory,
+                   int minIdle, int maxSize, long idleTimeoutMillis) {
+    this(executorService, factory, minIdle, maxSize, idleTimeoutMillis, System::currentTimeMillis);
+  }
+
+  ShellPool(@NotNull ExecutorService executorService, @NotNull ShellFactory<S> factory,
+            int minIdle, int maxSize, long idleTimeoutMillis, @NotNull LongSupplier clock) {
+    this.executorService = executorService;
+    this.factory = factory;
+    this.clock = clock;
+    this.maxSize = Math.max(1, maxSize);
+    this.minIdle = Math.max(0, Math.min(minIdle, this.maxSize));
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    if (idleTimeoutMillis > 0) {
+      long period = Math.max(1000, idleTimeoutMillis / 2);
+      evictor = Executors.newSingleThreadScheduledExecutor(newNamedThreadFactory("MongoShell Pool Evictor"));
+      evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+    else {
+      evictor = null;
+    }
+    synchronized (this) {
+      refill();
+    }
+  }
+
+  /**
+   * Takes a warmed up shell from the pool, waiting for a warm-up to finish if none is ready.
+   */
+  @NotNull
+  public S borrow() throws SQLException {
+    long start = System.nanoTime();
+    synchronized (this) {
+      checkClosed();
+      IdleShell<S> ready = idle.pollLast();
+      if (ready != null) {
+        hits.incrementAndGet();
+        refill();
+        return ready.shell();
+      }
+      misses.incrementAndGet();
+      waiters++;
+      try {
+        refill();
+        while (idle.isEmpty()) {
+          checkClosed();
+          if (warmingUp == 0) {
+            Throwable failure = lastFailure;
+            lastFailure = null;
+            if (failure != null) throw new SQLException("Cannot initialize MongoShell", failure);
+            refill();
+            if (warmingUp == 0) continue;
+          }
+          wait();
+        }
+        return idle.pollLast().shell();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException(e);
+      }
+      finally {
+        waiters--;
+        waitTimeNanos.addAndGet(System.nanoTime() - start);
+        refill();
+      }
+    }
+  }
+
+  /**
+   * Returns a borrowed shell. It is closed because its context holds the state of the connection it was bound to.
+   */
+  public void release(@NotNull S shell) {
+    factory.close(shell);
+    synchronized (this) {
+      if (!isClosed) refill();
+    }
+  }
+
+  private void refill() {
+    if (isClosed) return;
+    int target = Math.min(maxSize, minIdle + waiters);
+    while (idle.size() + warmingUp < target) {
+      warmingUp++;
+      try {
+        executorService.submit(this::warmUp);
+      }
+      catch (RuntimeException e) {
+        warmingUp--;
+        lastFailure = e;
+        notifyAll();
+        return;
+      }
+    }
+  }
+
+  private void warmUp() {
+    S shell = null;
+    Throwable failure = null;
+    try {
+      shell = factory.create();
+    }
+    catch (Throwable t) {
+      failure = t;
+    }
+    boolean discard;
+    synchronized (this) {
+      warmingUp--;
+      discard = isClosed || shell == null;
+      if (!discard) idle.addLast(new IdleShell<>(shell, clock.getAsLong()));
+      if (failure != null) lastFailure = failure;
+      notifyAll();
+    }
+    if (discard && shell != null) factory.close(shell);
+  }
+
+  void evictIdle() {
+    List<S> toClose = new ArrayList<>();
+    synchronized (this) {
+      long deadline = clock.getAsLong() - idleTimeoutMillis;
+      while (idle.size() > minIdle && idle.peekFirst().since() < deadline) {
+        toClose.add(idle.pollFirst().shell());
+      }
+    }
+    evicted.addAndGet(toClose.size());
+    for (S shell : toClose) {
+      factory.close(shell);
+    }
+  }
+
+  private void checkClosed() throws SQLException {
+    if (isClosed) throw new SQLException("MongoShell pool is closed");
+  }
+
+  /**
+   * Number of borrows served by an already warmed up shell.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Number of borrows that had to wait for a warm-up.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Total time borrowers spent waiting for a warm-up.
+   */
+  public long getWaitTime(@NotNull TimeUnit unit) {
+    return unit.convert(waitTimeNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getEvictedCount() {
+    return evicted.get();
+  }
+
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  public void close() {
+    List<S> toClose = new ArrayList<>();
+    synchronized (this) {
+      isClosed = true;
+      for (IdleShell<S> shell : idle) {
+        toClose.add(shell.shell());
+      }
+      idle.clear();
+      notifyAll();
+    }
+    if (evictor != null) evictor.shutdownNow();
+    for (S shell : toClose) {
+      factory.close(shell);
+    }
+  }
+
+  private record IdleShell<S>(@NotNull S shell, long since) {
+  }
+
+  public interface ShellFactory<S> {
+    /**
+     * Creates and warms up a shell, called on the pool's executor.
+     */
+    @NotNull
+    S create() throws Exception;
+
+    void close(@NotNull S shell);
+  }
+
+  /**
+   * Creates shells that share the polyglot engine, if there is one.
+   */
+  public static class MongoShellFactory implements ShellFactory<MongoShell> {
+    private final @Nullable Engine engine;
+
+    public MongoShellFactory(@Nullable Engine engine) {
+      this.engine = engine;
+    }
+
+    @Override
+    @NotNull
+    public MongoShell create() {
+      ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+      try {
+        Thread.currentThread().setContextClassLoader(MongoShell.class.getClassLoader());
+        // disable warning about not available runtime compilation
+        System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
+        MongoShell shell = new MongoShell(null, engine);
+        shell.eval("'initial warm up'");
+        return shell;
+      }
+      finally {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+      }
+    }
+
+    @Override
+    public void close(@NotNull MongoShell shell) {
+      shell.close();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.dbschema.mongo.mongosh;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of analyzed statements keyed by statement text.
+ * Tools tend to send the same statements over and over, so the analysis is done once per distinct text.
+ */
+public class StatementCache<V> {
+  private final int capacity;
+  private final Map<String, V> entries;
+  private long hits;
+  private long misses;
+
+  public StatementCache(int capacity) {
+    this.capacity = Math.max(0, capacity);
+    entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > StatementCache.this.capacity;
+      }
+    };
+  }
+
+  @NotNull
+  public synchronized V get(@NotNull String statement, @NotNull Function<String, V> analyzer) {
+    V value = entries.get(statement);
+    if (value != null) {
+      hits++;
+      return value;
+    }
+    misses++;
+    value = analyzer.apply(statement);
+    if (capacity > 0) entries.put(statement, value);
+    return value;
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized double getHitRatio() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+}
@@ -0,0 +1,80 @@
+package com.dbschema.mongo.mongosh;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Shell of one connection with the count of its active usages: statements being evaluated and open result sets
+ * backed by shell cursors. An unused shell can be released, the next {@link #getShell(Creator)} creates a new one.
+ */
+abstract class UsageTrackingHolder<S> {
+  private final LongSupplier clock;
+  private @Nullable S shell;
+  private int activeUsages;
+  private long lastUsed;
+
+  UsageTrackingHolder(@NotNull LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  protected abstract void disposeShell(@NotNull S shell);
+
+  /**
+   * Every call must be paired with {@link #returnShell(Object)}.
+   *
+   * @param creator creates the shell if there is none, e.g. after it was released
+   */
+  @NotNull
+  synchronized S getShell(@NotNull Creator<S> creator) throws SQLException {
+    if (shell == null) {
+      shell = creator.create();
+    }
+    activeUsages++;
+    lastUsed = clock.getAsLong();
+    return shell;
+  }
+
+  public synchronized void returnShell(@NotNull S shell) {
+    // the shell could have been recreated in the meantime
+    if (shell != this.shell) return;
+    if (activeUsages > 0) activeUsages--;
+    lastUsed = clock.getAsLong();
+  }
+
+  public synchronized void recreateShell() {
+    if (shell == null) return;
+    disposeShell(shell);
+    shell = null;
+    activeUsages = 0;
+  }
+
+  /**
+   * @return true if the shell was released because it has not been used for {@code idleTimeoutMillis}
+   */
+  synchronized boolean releaseIfIdle(long idleTimeoutMillis) {
+    if (shell == null || activeUsages > 0 || clock.getAsLong() - lastUsed < TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+      return false;
+    }
+    disposeShell(shell);
+    shell = null;
+    return true;
+  }
+
+  synchronized boolean hasShell() {
+    return shell != null;
+  }
+
+  public synchronized void close() {
+    if (shell != null) disposeShell(shell);
+    shell = null;
+  }
+
+  interface Creator<S> {
+    @NotNull
+    S create() throws SQLException;
+  }
+}
@@ -0,0 +1,267 @@
+package com.dbschema.mongo.nativeQuery;
+
+import com.dbschema.mongo.QueryOptions;
+import com.dbschema.mongo.Util;
+import com.dbschema.mongo.resultSet.DocumentColumns;
+import com.dbschema.mongo.resultSet.FlattenedResultSetIterator;
+import com.dbschema.mongo.resultSet.PrefetchingIterator;
+import com.dbschema.mongo.resultSet.ResultSetIterator;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.DistinctIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.EstimatedDocumentCountOptions;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.dbschema.mongo.Util.ok;
+
+/**
+ * Shell statement recognized by {@link NativeQueryParser} that can be run directly through the Java driver.
+ */
+public final class NativeQuery {
+  private static final String PARAMETER_KEY = "$$jdbcParameter";
+
+  enum Method {FIND, FIND_ONE, AGGREGATE, COUNT_DOCUMENTS, ESTIMATED_DOCUMENT_COUNT, DISTINCT}
+
+  final String collection;
+  final Method method;
+  Document filter;
+  Document projection;
+  Document sort;
+  Integer limit;
+  Integer skip;
+  Integer batchSize;
+  Integer maxTimeMS;
+  Boolean allowDiskUse;
+  String comment;
+  String distinctField;
+  List<Document> pipeline;
+
+  NativeQuery(@NotNull String collection, @NotNull Method method) {
+    this.collection = collection;
+    this.method = method;
+  }
+
+  @NotNull
+  public String getCollectionName() {
+    return collection;
+  }
+
+  @Nullable
+  public Document getFilter() {
+    return filter;
+  }
+
+  /**
+   * True if the query returns documents of its collection, so they can be split into {@link DocumentColumns}.
+   */
+  public boolean returnsCollectionDocuments() {
+    return method == Method.FIND;
+  }
+
+  /**
+   * Text that stands for the statement parameter with the given index inside a statement passed to {@link NativeQueryParser}.
+   */
+  @NotNull
+  public static String parameterPlaceholder(int index) {
+    return "{\"" + PARAMETER_KEY + "\": " + index + "}";
+  }
+
+  /**
+   * Returns a copy of this query with {@link #parameterPlaceholder(int) placeholders} replaced by the parameter values.
+   *
+   * @throws IllegalArgumentException if a parameter is bound where a document is required but its value is not a document
+   */
+  @NotNull
+  public NativeQuery bind(@NotNull List<?> parameters) {
+    NativeQuery bound = new NativeQuery(collection, method);
+    bound.filter = bindDocument(filter, parameters);
+    bound.projection = bindDocument(projection, parameters);
+    bound.sort = bindDocument(sort, parameters);
+    bound.limit = limit;
+    bound.skip = skip;
+    bound.batchSize = batchSize;
+    bound.maxTimeMS = maxTimeMS;
+    bound.allowDiskUse = allowDiskUse;
+    bound.comment = comment;
+    bound.distinctField = distinctField;
+    if (pipeline != null) {
+      bound.pipeline = new ArrayList<>(pipeline.size());
+      for (Document stage : pipeline) {
+        bound.pipeline.add(bindDocument(stage, parameters));
+      }
+    }
+    return bound;
+  }
+
+  @Nullable
+  private static Document bindDocument(@Nullable Document document, @NotNull List<?> parameters) {
+    if (document == null) return null;
+    Object value = bindValue(document, parameters);
+    if (value instanceof Document bound) return bound;
+    if (value instanceof Map<?, ?> map) {
+      @SuppressWarnings("unchecked") Map<String, Object> fields = (Map<String, Object>) map;
+      return new Document(fields);
+    }
+    throw new IllegalArgumentException("Document expected: " + value);
+  }
+
+  private static Object bindValue(Object value, @NotNull List<?> parameters) {
+    if (value instanceof Document document) {
+      if (document.size() == 1 && document.get(PARAMETER_KEY) instanceof Integer index) return parameters.get(index);
+      Document bound = new Document();
+      for (Map.Entry<String, Object> entry : document.entrySet()) {
+        bound.put(entry.getKey(), bindValue(entry.getValue(), parameters));
+      }
+      return bound;
+    }
+    if (value instanceof List<?> list) {
+      List<Object> bound = new ArrayList<>(list.size());
+      for (Object element : list) {
+        bound.add(bindValue(element, parameters));
+      }
+      return bound;
+    }
+    return value;
+  }
+
+  /**
+   * Runs the query. The query timeout of the options is sent as {@code maxTimeMS},
+   * so the server aborts the operation with {@link com.mongodb.MongoExecutionTimeoutException}.
+   * Unless the query has its own comment, operations are tagged with the comment of the statement cancellation.
+   */
+  @NotNull
+  public ResultSet execute(@NotNull MongoDatabase database, @NotNull QueryOptions options) {
+    return execute(database, options, null);
+  }
+
+  /**
+   * @param columns columns of the collection, if set found documents are returned by {@link FlattenedResultSetIterator}
+   */
+  @NotNull
+  public ResultSet execute(@NotNull MongoDatabase database, @NotNull QueryOptions options, @Nullable DocumentColumns columns) {
+    MongoCollection<Document> coll = database.getCollection(collection);
+    Document filter = this.filter != null ? this.filter : new Document();
+    Long maxTime = maxTimeMS(options);
+    String comment = comment(options);
+    return switch (method) {
+      case FIND -> {
+        Iterator<Document> iterator = prefetch(find(coll, filter, options).iterator(), options);
+        yield columns != null ? new FlattenedResultSetIterator(iterator, columns, collection) : new ResultSetIterator(iterator);
+      }
+      case FIND_ONE -> ok(find(coll, filter, options).first());
+      case AGGREGATE -> new ResultSetIterator(prefetch(aggregate(coll, options).iterator(), options));
+      case COUNT_DOCUMENTS -> {
+        CountOptions countOptions = new CountOptions();
+        if (maxTime != null) countOptions.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        yield ok(coll.countDocuments(filter, countOptions.comment(comment)));
+      }
+      case ESTIMATED_DOCUMENT_COUNT -> {
+        EstimatedDocumentCountOptions countOptions = new EstimatedDocumentCountOptions();
+        if (maxTime != null) countOptions.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        yield ok(coll.estimatedDocumentCount(countOptions.comment(comment)));
+      }
+      case DISTINCT -> {
+        DistinctIterable<BsonValue> iterable = coll.distinct(distinctField, filter, BsonValue.class).comment(comment);
+        if (maxTime != null) iterable.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        List<Object> values = new ArrayList<>();
+        for (BsonValue value : iterable) {
+          if (options.maxRows() > 0 && values.size() >= options.maxRows()) break;
+          values.add(Util.decode(value));
+        }
+        yield ok(values);
+      }
+    };
+  }
+
+  @NotNull
+  private static Iterator<Document> prefetch(@NotNull MongoCursor<Document> cursor, @NotNull QueryOptions options) {
+    return options.prefetchRows() > 0 ? new PrefetchingIterator<>(cursor, options.prefetchRows()) : cursor;
+  }
+
+  @NotNull
+  private FindIterable<Document> find(@NotNull MongoCollection<Document> coll, @NotNull Document filter, @NotNull QueryOptions options) {
+    FindIterable<Document> iterable = coll.find(filter).comment(comment(options));
+    if (projection != null) iterable.projection(projection);
+    if (sort != null) iterable.sort(sort);
+    if (skip != null) iterable.skip(skip);
+    Integer limit = limit(options.maxRows());
+    if (limit != null) iterable.limit(limit);
+    Long maxTime = maxTimeMS(options);
+    if (maxTime != null) iterable.maxTime(maxTime, TimeUnit.MILLISECONDS);
+    Integer batch = batchSize(options.fetchSize());
+    if (batch != null) iterable.batchSize(batch);
+    return iterable;
+  }
+
+  @NotNull
+  private AggregateIterable<Document> aggregate(@NotNull MongoCollection<Document> coll, @NotNull QueryOptions options) {
+    AggregateIterable<Document> iterable = coll.aggregate(limitPipeline(options.maxRows()));
+    if (allowDiskUse != null) iterable.allowDiskUse(allowDiskUse);
+    Long maxTime = maxTimeMS(options);
+    if (maxTime != null) iterable.maxTime(maxTime, TimeUnit.MILLISECONDS);
+    iterable.comment(comment(options));
+    Integer batch = batchSize(options.fetchSize());
+    if (batch != null) iterable.batchSize(batch);
+    return iterable;
+  }
+
+  /**
+   * The stricter of the query limit and the statement max rows. A negative limit (single batch) keeps its sign.
+   */
+  @Nullable
+  Integer limit(int maxRows) {
+    if (maxRows <= 0) return limit;
+    if (limit == null || limit == 0) return maxRows;
+    return limit > 0 ? Math.min(limit, maxRows) : -Math.min(-limit, maxRows);
+  }
+
+  /**
+   * Pipeline with {@code $limit} appended for the statement max rows. Pipelines that write their output are not limited.
+   */
+  @NotNull
+  List<Document> limitPipeline(int maxRows) {
+    if (maxRows <= 0) return pipeline;
+    if (!pipeline.isEmpty()) {
+      Document last = pipeline.get(pipeline.size() - 1);
+      if (last.containsKey("$out") || last.containsKey("$merge")) return pipeline;
+    }
+    List<Document> limited = new ArrayList<>(pipeline);
+    limited.add(new Document("$limit", maxRows));
+    return limited;
+  }
+
+  @NotNull
+  private String comment(@NotNull QueryOptions options) {
+    return comment != null ? comment : options.cancellation().getComment();
+  }
+
+  /**
+   * The stricter of the statement query timeout and {@code maxTimeMS} given in the query itself.
+   */
+  @Nullable
+  private Long maxTimeMS(@NotNull QueryOptions options) {
+    long timeout = TimeUnit.SECONDS.toMillis(options.queryTimeoutSeconds());
+    if (maxTimeMS == null) return timeout > 0 ? timeout : null;
+    return timeout > 0 ? Math.min(timeout, maxTimeMS) : maxTimeMS.longValue();
+  }
+
+  @Nullable
+  private Integer batchSize(int fetchSize) {
+    if (batchSize != null) return batchSize;
+    return fetchSize > 1 ? fetchSize : null;
+  }
+}
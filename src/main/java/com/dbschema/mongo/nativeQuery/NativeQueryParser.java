@@ -0,0 +1,276 @@
+package com.dbschema.mongo.nativeQuery;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recognizes the most common read-only shell statements, e.g.
+ * <pre>
+ *   db.coll.find({a: 1}, {b: 1}).sort({c: -1}).skip(10).limit(5)
+ *   db.getCollection('coll').countDocuments({a: {$gt: 1}})
+ * </pre>
+ * Arguments must be literals that {@link org.bson.json.JsonReader} understands. Anything else makes
+ * {@link #parse(String)} return null, so the statement is evaluated by mongosh as before.
+ */
+public final class NativeQueryParser {
+  private static final Set<String> CURSOR_METHODS = Set.of("sort", "limit", "skip", "projection", "batchSize");
+  private static final Set<String> AGGREGATE_OPTIONS = Set.of("allowDiskUse", "batchSize", "maxTimeMS", "comment");
+
+  private final String text;
+  private int pos;
+
+  private NativeQueryParser(@NotNull String text) {
+    this.text = text;
+  }
+
+  @Nullable
+  public static NativeQuery parse(@NotNull String query) {
+    try {
+      return new NativeQueryParser(query.trim()).parseQuery();
+    }
+    catch (JsonParseException | ClassCastException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private NativeQuery parseQuery() {
+    if (!text.startsWith("db.")) return null;
+    pos = 3;
+    StringBuilder collection = new StringBuilder();
+    String method = null;
+    List<Object> args = null;
+    while (method == null) {
+      String identifier = readIdentifier();
+      if (identifier == null) return null;
+      if (peek() == '(') {
+        List<Object> callArgs = readArguments();
+        if (callArgs == null) return null;
+        if (collection.length() == 0 && identifier.equals("getCollection")) {
+          if (callArgs.size() != 1 || !(callArgs.get(0) instanceof String name)) return null;
+          collection.append(name);
+        }
+        else {
+          method = identifier;
+          args = callArgs;
+        }
+      }
+      else {
+        if (collection.length() != 0) collection.append('.');
+        collection.append(identifier);
+      }
+      if (method == null && !consume('.')) return null;
+    }
+    if (collection.length() == 0) return null;
+
+    NativeQuery query = createQuery(collection.toString(), method, args);
+    if (query == null) return null;
+    while (skipWhitespace() && consume('.')) {
+      skipWhitespace();
+      if (query.method != NativeQuery.Method.FIND) return null;
+      String chained = readIdentifier();
+      if (chained == null || !CURSOR_METHODS.contains(chained) || peek() != '(') return null;
+      List<Object> chainedArgs = readArguments();
+      if (chainedArgs == null || chainedArgs.size() != 1) return null;
+      if (!applyCursorMethod(query, chained, chainedArgs.get(0))) return null;
+    }
+    while (consume(';')) skipWhitespace();
+    return pos == text.length() ? query : null;
+  }
+
+  @Nullable
+  private static NativeQuery createQuery(@NotNull String collection, @NotNull String method, @NotNull List<Object> args) {
+    NativeQuery query;
+    switch (method) {
+      case "find", "findOne" -> {
+        if (args.size() > 2) return null;
+        query = new NativeQuery(collection, method.equals("find") ? NativeQuery.Method.FIND : NativeQuery.Method.FIND_ONE);
+        query.filter = documentArg(args, 0);
+        query.projection = documentArg(args, 1);
+      }
+      case "countDocuments", "count" -> {
+        if (args.size() > 1) return null;
+        // count() without a filter is answered from collection metadata, like the legacy count command
+        boolean metadataCount = method.equals("count") && args.isEmpty();
+        query = new NativeQuery(collection, metadataCount ? NativeQuery.Method.ESTIMATED_DOCUMENT_COUNT : NativeQuery.Method.COUNT_DOCUMENTS);
+        query.filter = documentArg(args, 0);
+      }
+      case "estimatedDocumentCount" -> {
+        if (!args.isEmpty()) return null;
+        query = new NativeQuery(collection, NativeQuery.Method.ESTIMATED_DOCUMENT_COUNT);
+      }
+      case "distinct" -> {
+        if (args.isEmpty() || args.size() > 2 || !(args.get(0) instanceof String field)) return null;
+        query = new NativeQuery(collection, NativeQuery.Method.DISTINCT);
+        query.distinctField = field;
+        query.filter = documentArg(args, 1);
+      }
+      case "aggregate" -> {
+        query = new NativeQuery(collection, NativeQuery.Method.AGGREGATE);
+        if (!args.isEmpty() && args.get(0) instanceof List<?> stages) {
+          if (args.size() > 2) return null;
+          query.pipeline = documents(stages);
+          Document options = documentArg(args, 1);
+          if (options != null && !applyAggregateOptions(query, options)) return null;
+        }
+        else {
+          // mongosh accepts stages as varargs too: db.coll.aggregate({$match: ...}, {$group: ...})
+          query.pipeline = documents(args);
+        }
+      }
+      default -> {
+        return null;
+      }
+    }
+    return query;
+  }
+
+  private static boolean applyAggregateOptions(@NotNull NativeQuery query, @NotNull Document options) {
+    for (String key : options.keySet()) {
+      if (!AGGREGATE_OPTIONS.contains(key)) return false;
+    }
+    query.allowDiskUse = options.getBoolean("allowDiskUse");
+    query.batchSize = intValue(options.get("batchSize"));
+    query.maxTimeMS = intValue(options.get("maxTimeMS"));
+    Object comment = options.get("comment");
+    if (comment != null && !(comment instanceof String)) return false;
+    query.comment = (String) comment;
+    return true;
+  }
+
+  private static boolean applyCursorMethod(@NotNull NativeQuery query, @NotNull String method, Object arg) {
+    switch (method) {
+      case "sort" -> query.sort = (Document) arg;
+      case "projection" -> query.projection = (Document) arg;
+      case "limit" -> query.limit = intValue(arg);
+      case "skip" -> query.skip = intValue(arg);
+      case "batchSize" -> query.batchSize = intValue(arg);
+      default -> {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private static Document documentArg(@NotNull List<Object> args, int index) {
+    return index < args.size() ? (Document) args.get(index) : null;
+  }
+
+  @NotNull
+  private static List<Document> documents(@NotNull List<?> values) {
+    List<Document> documents = new ArrayList<>(values.size());
+    for (Object value : values) {
+      documents.add((Document) value);
+    }
+    return documents;
+  }
+
+  @Nullable
+  private static Integer intValue(@Nullable Object value) {
+    if (value == null) return null;
+    if (value instanceof Number number && number.doubleValue() == number.intValue()) return number.intValue();
+    throw new IllegalArgumentException("Integer expected: " + value);
+  }
+
+  @Nullable
+  private String readIdentifier() {
+    int start = pos;
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (!(Character.isLetterOrDigit(c) || c == '_' || c == '$')) break;
+      pos++;
+    }
+    if (pos == start || Character.isDigit(text.charAt(start))) return null;
+    return text.substring(start, pos);
+  }
+
+  /**
+   * Reads a parenthesized argument list starting at the current position and decodes it
+   * as the elements of a JSON array. Returns null if the arguments cannot be delimited.
+   */
+  @Nullable
+  private List<Object> readArguments() {
+    int start = pos + 1;
+    int end = findClosingParenthesis(pos);
+    if (end == -1) return null;
+    pos = end + 1;
+    String arguments = text.substring(start, end);
+    if (arguments.isBlank()) return new ArrayList<>();
+    return Document.parse("{\"args\": [" + arguments + "]}").getList("args", Object.class);
+  }
+
+  private int findClosingParenthesis(int open) {
+    int depth = 0;
+    char previous = '(';
+    for (int i = open; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '(', '[', '{' -> depth++;
+        case ')', ']', '}' -> {
+          if (--depth == 0) return c == ')' ? i : -1;
+        }
+        case '"', '\'' -> {
+          i = skipQuoted(i, c);
+          if (i == -1) return -1;
+        }
+        case '/' -> {
+          // only a regular expression literal may start after these characters
+          if ("(,:[{".indexOf(previous) == -1) return -1;
+          i = skipRegex(i);
+          if (i == -1) return -1;
+        }
+        case '`' -> {
+          return -1; // template literals are evaluated by JS
+        }
+        default -> {
+        }
+      }
+      if (!Character.isWhitespace(c)) previous = c;
+    }
+    return -1;
+  }
+
+  private int skipQuoted(int start, char quote) {
+    for (int i = start + 1; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\\') i++;
+      else if (c == quote) return i;
+    }
+    return -1;
+  }
+
+  private int skipRegex(int start) {
+    boolean inClass = false;
+    for (int i = start + 1; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\\') i++;
+      else if (c == '[') inClass = true;
+      else if (c == ']') inClass = false;
+      else if (c == '/' && !inClass) return i;
+      else if (c == '\n') return -1;
+    }
+    return -1;
+  }
+
+  private char peek() {
+    return pos < text.length() ? text.charAt(pos) : 0;
+  }
+
+  private boolean consume(char c) {
+    if (peek() != c) return false;
+    pos++;
+    return true;
+  }
+
+  private boolean skipWhitespace() {
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    return true;
+  }
+}
@@ -0,0 +1,238 @@
+package com.dbschema.mongo.resultSet;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented storage of {@link ListResultSet} rows.
+ * <p>
+ * Metadata rows repeat the same catalog, schema, table and type names over and over, so strings are interned
+ * in a dictionary shared by all columns. Columns declared as {@link Types#INTEGER} keep primitive ints.
+ * {@link #sort(int, Comparator)} only reorders row indexes, the cells stay where they are.
+ */
+final class ColumnStore {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final List<Column> columns = new ArrayList<>();
+  private final Map<Integer, Integer> declaredTypes = new HashMap<>();
+  private final Map<String, String> strings = new HashMap<>();
+  private int[] rowLengths = new int[INITIAL_CAPACITY];
+  private int capacity = INITIAL_CAPACITY;
+  private int rowCount;
+  private int @Nullable [] order;
+
+  /**
+   * Declares the type of a column, only {@link Types#INTEGER} changes the way cells are stored.
+   * Rows with values of such column that are not ints are rejected by {@link #addRow(Object[])}.
+   */
+  void setType(int columnIndex, int sqlType) {
+    if (columnIndex < columns.size()) throw new IllegalStateException("Column types must be set before rows are added");
+    declaredTypes.put(columnIndex, sqlType);
+  }
+
+  int getType(int columnIndex) {
+    return declaredTypes.getOrDefault(columnIndex, Types.OTHER);
+  }
+
+  void addRow(@Nullable Object @NotNull [] values) {
+    if (rowCount == capacity) {
+      capacity *= 2;
+      rowLengths = Arrays.copyOf(rowLengths, capacity);
+      for (Column column : columns) {
+        column.grow(capacity);
+      }
+    }
+    while (columns.size() < values.length) {
+      columns.add(getType(columns.size()) == Types.INTEGER ? new IntColumn(capacity) : new ObjectColumn(capacity));
+    }
+    for (int i = 0; i < values.length; i++) {
+      Object value = values[i];
+      if (value instanceof String s) value = strings.computeIfAbsent(s, k -> k);
+      try {
+        columns.get(i).set(rowCount, value);
+      }
+      catch (IllegalArgumentException e) {
+        // the row is not added, the next one overwrites the cells that were set
+        throw new IllegalArgumentException("Cannot add row " + (rowCount + 1) + ", column " + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    rowLengths[rowCount] = values.length;
+    rowCount++;
+    if (order != null) {
+      order = Arrays.copyOf(order, rowCount);
+      order[rowCount - 1] = rowCount - 1;
+    }
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return number of cells in the row, rows may be shorter than the number of columns
+   */
+  int getRowLength(int row) {
+    return rowLengths[index(row)];
+  }
+
+  @Nullable
+  Object get(int row, int columnIndex) {
+    return columns.get(columnIndex).get(index(row));
+  }
+
+  boolean isNull(int row, int columnIndex) {
+    Column column = columns.get(columnIndex);
+    return column instanceof IntColumn ints ? ints.isNull(index(row)) : column.get(index(row)) == null;
+  }
+
+  boolean isIntColumn(int columnIndex) {
+    return columns.get(columnIndex) instanceof IntColumn;
+  }
+
+  /**
+   * Reads a cell of an {@link #isIntColumn(int) int column} without boxing, null is read as 0.
+   */
+  int getInt(int row, int columnIndex) {
+    return ((IntColumn) columns.get(columnIndex)).getInt(index(row));
+  }
+
+  /**
+   * Stable sort of the rows by the values of the column. Cells that don't exist in short rows are compared as null.
+   */
+  void sort(int columnIndex, @NotNull Comparator<Object> comparator) {
+    Integer[] rows = new Integer[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      rows[i] = index(i);
+    }
+    Arrays.sort(rows, Comparator.comparing(row -> columnIndex < rowLengths[row] ? columns.get(columnIndex).get(row) : null, comparator));
+    int[] newOrder = new int[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      newOrder[i] = rows[i];
+    }
+    order = newOrder;
+  }
+
+  /**
+   * Drops the string dictionary and unused capacity once all rows are added. Rows can still be added later.
+   */
+  void trimToSize() {
+    strings.clear();
+    if (capacity == rowCount) return;
+    capacity = Math.max(rowCount, 1);
+    rowLengths = Arrays.copyOf(rowLengths, capacity);
+    for (Column column : columns) {
+      column.grow(capacity);
+    }
+  }
+
+  /**
+   * Removes all rows, declared column types are kept.
+   */
+  void clear() {
+    columns.clear();
+    strings.clear();
+    capacity = INITIAL_CAPACITY;
+    rowLengths = new int[capacity];
+    rowCount = 0;
+    order = null;
+  }
+
+  private int index(int row) {
+    return order != null ? order[row] : row;
+  }
+
+  private static abstract class Column {
+    abstract void grow(int capacity);
+
+    abstract void set(int row, @Nullable Object value);
+
+    @Nullable
+    abstract Object get(int row);
+  }
+
+  private static final class ObjectColumn extends Column {
+    private Object[] values;
+
+    ObjectColumn(int capacity) {
+      values = new Object[capacity];
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void set(int row, @Nullable Object value) {
+      values[row] = value;
+    }
+
+    @Override
+    @Nullable
+    Object get(int row) {
+      return values[row];
+    }
+  }
+
+  private static final class IntColumn extends Column {
+    private int[] values;
+    private final BitSet nulls = new BitSet();
+
+    IntColumn(int capacity) {
+      values = new int[capacity];
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void set(int row, @Nullable Object value) {
+      if (value == null || (value instanceof String s && s.isEmpty())) {
+        nulls.set(row);
+        return;
+      }
+      values[row] = toInt(value);
+      // the slot may be reused after a rejected row
+      nulls.clear(row);
+    }
+
+    private static int toInt(@NotNull Object value) {
+      if (value instanceof Number n) {
+        double d = n.doubleValue();
+        if (d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) throw new IllegalArgumentException("value " + value + " is out of int range");
+        return n.intValue();
+      }
+      try {
+        return Integer.parseInt(value.toString().trim());
+      }
+      catch (NumberFormatException e) {
+        throw new IllegalArgumentException("value '" + value + "' is not an int");
+      }
+    }
+
+    @Override
+    @Nullable
+    Object get(int row) {
+      return nulls.get(row) ? null : values[row];
+    }
+
+    int getInt(int row) {
+      return values[row];
+    }
+
+    boolean isNull(int row) {
+      return nulls.get(row);
+    }
+  }
+}
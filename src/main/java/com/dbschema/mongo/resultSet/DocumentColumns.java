@@ -0,0 +1,131 @@
+package com.dbschema.mongo.resultSet;
+
+import com.dbschema.mongo.schema.MetaField;
+import com.dbschema.mongo.schema.MetaJson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.dbschema.mongo.Util.escapeChars;
+
+/**
+ * Columns of a collection built from its {@link MetaJson} field tree.
+ * <p>
+ * Every scalar field becomes a column labeled with its dotted path (e.g. {@code address.city}),
+ * nested documents are expanded, arrays stay in one column. The tree of accessors is built once,
+ * {@link #extract(Object, Object[])} walks a document along it and fills all columns in a single pass.
+ */
+public final class DocumentColumns {
+  private final String[] labels;
+  private final int[] types;
+  private final Node root;
+  private final Map<String, Integer> indexes = new HashMap<>();
+
+  private DocumentColumns(@NotNull List<String> labels, @NotNull List<Integer> types, @NotNull Node root) {
+    this.labels = labels.toArray(new String[0]);
+    this.types = types.stream().mapToInt(Integer::intValue).toArray();
+    this.root = root;
+    for (int i = this.labels.length - 1; i >= 0; i--) {
+      indexes.put(this.labels[i].toLowerCase(Locale.ROOT), i + 1);
+    }
+  }
+
+  /**
+   * @return columns of the fields of the json or null if no fields were discovered
+   */
+  @Nullable
+  public static DocumentColumns of(@NotNull MetaJson json) {
+    List<String> labels = new ArrayList<>();
+    List<Integer> types = new ArrayList<>();
+    Node root = new Node(json.name, -1);
+    collect(json, root, "", labels, types);
+    return labels.isEmpty() ? null : new DocumentColumns(labels, types, root);
+  }
+
+  private static void collect(@NotNull MetaJson json, @NotNull Node node, @NotNull String prefix,
+                              @NotNull List<String> labels, @NotNull List<Integer> types) {
+    for (MetaField field : json.fields) {
+      String label = prefix + escapeChars(field.name, '\\', '.');
+      if (field instanceof MetaJson child && child.type == MetaJson.TYPE_MAP) {
+        Node childNode = new Node(child.name, -1);
+        collect(child, childNode, label + ".", labels, types);
+        if (childNode.children.length > 0) node.add(childNode);
+      }
+      else {
+        node.add(new Node(field.name, labels.size()));
+        labels.add(label);
+        types.add(getColumnType(field));
+      }
+    }
+  }
+
+  private static int getColumnType(@NotNull MetaField field) {
+    if (field.type == MetaJson.TYPE_LIST) return Types.JAVA_OBJECT;
+    return field.type;
+  }
+
+  public int getColumnCount() {
+    return labels.length;
+  }
+
+  @NotNull
+  public String[] getLabels() {
+    return labels.clone();
+  }
+
+  @NotNull
+  public int[] getTypes() {
+    return types.clone();
+  }
+
+  /**
+   * @return 1-based index of the column with the label (case-insensitive) or 0 if there is no such column
+   */
+  public int findColumn(@NotNull String label) {
+    Integer index = indexes.get(label.toLowerCase(Locale.ROOT));
+    return index != null ? index : 0;
+  }
+
+  /**
+   * Fills {@code values} with the values of the columns of the document, missing fields are set to null.
+   */
+  public void extract(@Nullable Object document, @Nullable Object @NotNull [] values) {
+    Arrays.fill(values, null);
+    extract(root, document, values);
+  }
+
+  private static void extract(@NotNull Node node, @Nullable Object document, @Nullable Object @NotNull [] values) {
+    if (!(document instanceof Map<?, ?> map)) return;
+    for (Node child : node.children) {
+      Object value = map.get(child.name);
+      if (child.column >= 0) values[child.column] = value;
+      else if (value != null) extract(child, value, values);
+    }
+  }
+
+  private static final class Node {
+    private static final Node[] EMPTY = new Node[0];
+
+    final String name;
+    final int column;
+    Node[] children = EMPTY;
+
+    Node(@NotNull String name, int column) {
+      this.name = name;
+      this.column = column;
+    }
+
+    void add(@NotNull Node child) {
+      Node[] newChildren = Arrays.copyOf(children, children.length + 1);
+      newChildren[children.length] = child;
+      children = newChildren;
+    }
+  }
+}
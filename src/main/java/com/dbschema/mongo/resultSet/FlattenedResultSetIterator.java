@@ -0,0 +1,54 @@
+package com.dbschema.mongo.resultSet;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Result set that exposes the fields of the documents as separate typed columns described by {@link DocumentColumns}.
+ * Fields that were not discovered in the collection sample are not returned.
+ */
+public class FlattenedResultSetIterator extends ResultSetIterator {
+  private final DocumentColumns columns;
+  private final String tableName;
+  private final Object[] values;
+
+  public FlattenedResultSetIterator(@NotNull Iterator<?> iterator, @NotNull DocumentColumns columns, @NotNull String tableName) {
+    super(iterator);
+    this.columns = columns;
+    this.tableName = tableName;
+    values = new Object[columns.getColumnCount()];
+  }
+
+  @Override
+  public boolean next() throws SQLException {
+    boolean hasNext = super.next();
+    columns.extract(actual, values);
+    return hasNext;
+  }
+
+  @Override
+  protected Object getValue(int columnIndex) throws SQLException {
+    if (columnIndex < 1 || columnIndex > values.length) throw new SQLException("Invalid column index: " + columnIndex);
+    return values[columnIndex - 1];
+  }
+
+  @Override
+  protected int getColumnCount() {
+    return values.length;
+  }
+
+  @Override
+  public int findColumn(String columnLabel) throws SQLException {
+    int index = columns.findColumn(columnLabel);
+    if (index == 0) throw new SQLException("Invalid column label: " + columnLabel);
+    return index;
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() {
+    return new MongoResultSetMetaData(tableName, columns.getLabels(), columns.getTypes());
+  }
+}
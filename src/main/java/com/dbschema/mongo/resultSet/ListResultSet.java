@@ -5,17 +5,31 @@ import com.dbschema.mongo.SQLAlreadyClosedException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.URL;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.TreeMap;
+
+/**
+ * Result set over rows built in memory, e.g. by {@link java.sql.DatabaseMetaData} methods.
+ * <p>
+ * Rows are kept column by column in a {@link ColumnStore}.
+ * Column labels are resolved through a map that is built once per set of column names.
+ */
 public class ListResultSet implements ResultSet {
-  private final List<Object[]> data;
+  private final ColumnStore store = new ColumnStore();
   private String[] columnNames;
+  private Map<String, Integer> columnIndexes;
+  private Map<String, Integer> columnIndexesIgnoreCase;
   private int currentRow = -1;
+  private boolean wasNull;
   private boolean isClosed = false;
 
   public ListResultSet() {
@@ -23,22 +37,46 @@ public class ListResultSet implements ResultSet {
   }
 
   public ListResultSet(List<Object[]> data, String[] columnNames) {
-    this.data = data;
+    // not addRow(), subclasses may override it and aren't initialized yet
+    for (Object[] row : data) {
+      store.addRow(row);
+    }
     this.columnNames = columnNames;
   }
 
   public ListResultSet(Object value, String[] columnNames) {
-    this.data = new ArrayList<>();
-    this.data.add(new Object[]{value});
+    store.addRow(new Object[]{value});
     this.columnNames = columnNames;
   }
 
   public void setColumnNames(String... columnNames) {
     this.columnNames = columnNames;
+    columnIndexes = null;
+    columnIndexesIgnoreCase = null;
+  }
+
+  /**
+   * Declares the SQL type of a column returned by {@link #getMetaData()}. {@link Types#INTEGER} columns are stored
+   * as primitive ints, their cells may be numbers or numeric strings. Must be called before rows are added.
+   */
+  public void setColumnType(String columnName, int sqlType) {
+    int index = Arrays.asList(columnNames).indexOf(columnName);
+    if (index == -1) throw new IllegalArgumentException("Column " + columnName + " doesn't exist in this ResultSet");
+    store.setType(index, sqlType);
   }
 
+  /**
+   * Copies the values, so the same array can be reused for the next row.
+   */
   public void addRow(Object[] columnValues) {
-    data.add(columnValues);
+    store.addRow(columnValues);
+  }
+
+  /**
+   * Orders the rows by the values of the column. Only row indexes are sorted, cells are not moved.
+   */
+  public void sortRows(String columnName, Comparator<Object> comparator) throws SQLException {
+    store.sort(findColumn(columnName) - 1, comparator);
   }
 
   public <T> T unwrap(Class<T> iface) {
@@ -52,17 +90,33 @@ public class ListResultSet implements ResultSet {
   /**
    * @see java.sql.ResultSet#next()
    */
-  public boolean next() {
-    if (data == null) {
-      return false;
-    }
-    if (currentRow < data.size() - 1) {
-      currentRow++;
-      return true;
+  public boolean next() throws SQLException {
+    while (true) {
+      if (currentRow == -1) store.trimToSize();
+      if (currentRow < store.getRowCount() - 1) {
+        currentRow++;
+        return true;
+      }
+      if (!fetchRows()) return false;
     }
+  }
+
+  /**
+   * Called by {@link #next()} when all rows were read. Result sets that produce rows lazily replace them
+   * using {@link #clearRows()} and {@link #addRow(Object[])} and return true, or return false if there are no more rows.
+   */
+  protected boolean fetchRows() throws SQLException {
     return false;
   }
 
+  /**
+   * Removes all rows, so the memory is bounded by one batch of rows in lazy result sets.
+   */
+  protected void clearRows() {
+    store.clear();
+    currentRow = -1;
+  }
+
   /**
    * @see java.sql.ResultSet#close()
    */
@@ -83,71 +137,83 @@ public class ListResultSet implements ResultSet {
    * @see java.sql.ResultSet#wasNull()
    */
   public boolean wasNull() {
-    return false;
+    return wasNull;
   }
 
   public String getString(int columnIndex) throws SQLException {
-    if (currentRow >= data.size()) {
-      throw new SQLException("ResultSet exhausted, request currentRow = " + currentRow);
-    }
-    int adjustedColumnIndex = columnIndex - 1;
-    if (adjustedColumnIndex >= data.get(currentRow).length) {
-      throw new SQLException("Column index does not exist: " + columnIndex);
-    }
-    final Object val = data.get(currentRow)[adjustedColumnIndex];
+    final Object val = getObject(columnIndex);
     return val != null ? val.toString() : null;
   }
 
   public boolean getBoolean(int columnIndex) throws SQLException {
-    return Boolean.parseBoolean(getString(columnIndex));
+    Object value = getObject(columnIndex);
+    return value != null && ValueConverter.of(value).getBoolean(value);
   }
 
   public byte getByte(int columnIndex) throws SQLException {
-    return Byte.parseByte(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) throw outOfRange(value, "byte");
+    return (byte) value;
   }
 
   public short getShort(int columnIndex) throws SQLException {
-    return Short.parseShort(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw outOfRange(value, "short");
+    return (short) value;
   }
 
   public int getInt(int columnIndex) throws SQLException {
-    return Integer.parseInt(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw outOfRange(value, "int");
+    return (int) value;
+  }
+
+  private static SQLException outOfRange(long value, String type) {
+    return new SQLException("Value " + value + " is out of " + type + " range");
   }
 
   public long getLong(int columnIndex) throws SQLException {
-    return Long.parseLong(getString(columnIndex));
+    checkCell(columnIndex);
+    if (store.isIntColumn(columnIndex - 1)) {
+      wasNull = store.isNull(currentRow, columnIndex - 1);
+      return store.getInt(currentRow, columnIndex - 1);
+    }
+    Object value = getObject(columnIndex);
+    return value != null ? ValueConverter.of(value).getLong(value) : 0;
   }
 
   public float getFloat(int columnIndex) throws SQLException {
-    return Float.parseFloat(getString(columnIndex));
+    return (float) getDouble(columnIndex);
   }
 
   public double getDouble(int columnIndex) throws SQLException {
-    return Double.parseDouble(getString(columnIndex));
+    Object value = getObject(columnIndex);
+    return value != null ? ValueConverter.of(value).getDouble(value) : 0;
   }
 
-  public BigDecimal getBigDecimal(int columnIndex, int scale) {
-
-    return null;
+  public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+    BigDecimal value = getBigDecimal(columnIndex);
+    return value != null ? value.setScale(scale, RoundingMode.HALF_UP) : null;
   }
 
   public byte[] getBytes(int columnIndex) throws SQLException {
-    return getString(columnIndex).getBytes();
+    String value = getString(columnIndex);
+    return value != null ? value.getBytes() : null;
   }
 
-  public Date getDate(int columnIndex) {
-
-    return null;
+  public Date getDate(int columnIndex) throws SQLException {
+    Timestamp timestamp = getTimestamp(columnIndex);
+    return timestamp != null ? new Date(timestamp.getTime()) : null;
   }
 
-  public Time getTime(int columnIndex) {
-
-    return null;
+  public Time getTime(int columnIndex) throws SQLException {
+    Timestamp timestamp = getTimestamp(columnIndex);
+    return timestamp != null ? new Time(timestamp.getTime()) : null;
   }
 
-  public Timestamp getTimestamp(int columnIndex) {
-
-    return null;
+  public Timestamp getTimestamp(int columnIndex) throws SQLException {
+    Object value = getObject(columnIndex);
+    return value != null ? ValueConverter.of(value).getTimestamp(value) : null;
   }
 
   public InputStream getAsciiStream(int columnIndex) {
@@ -166,72 +232,55 @@ public class ListResultSet implements ResultSet {
   }
 
   public String getString(String columnLabel) throws SQLException {
-    int index = -1;
-    if (columnNames == null) {
-      throw new SQLException("Use of columnLabel requires setColumnNames to be called first.");
-    }
-    for (int i = 0; i < columnNames.length; i++) {
-      if (columnLabel.equals(columnNames[i])) {
-        index = i;
-        break;
-      }
-    }
-    if (index == -1) {
-      throw new SQLException("Column " + columnLabel + " doesn't exist in this ResultSet");
-    }
-    return getString(index + 1);
+    return getString(findColumn(columnLabel));
   }
 
   public boolean getBoolean(String columnLabel) throws SQLException {
-    return Boolean.parseBoolean(getString(columnLabel));
+    return getBoolean(findColumn(columnLabel));
   }
 
   public byte getByte(String columnLabel) throws SQLException {
-    return Byte.parseByte(getString(columnLabel));
+    return getByte(findColumn(columnLabel));
   }
 
   public short getShort(String columnLabel) throws SQLException {
-    return Short.parseShort(getString(columnLabel));
+    return getShort(findColumn(columnLabel));
   }
 
   public int getInt(String columnLabel) throws SQLException {
-    return Integer.parseInt(getString(columnLabel));
+    return getInt(findColumn(columnLabel));
   }
 
   public long getLong(String columnLabel) throws SQLException {
-    return Long.parseLong(getString(columnLabel));
+    return getLong(findColumn(columnLabel));
   }
 
   public float getFloat(String columnLabel) throws SQLException {
-    return Float.parseFloat(getString(columnLabel));
+    return getFloat(findColumn(columnLabel));
   }
 
   public double getDouble(String columnLabel) throws SQLException {
-    return Double.parseDouble(getString(columnLabel));
+    return getDouble(findColumn(columnLabel));
   }
 
-  public BigDecimal getBigDecimal(String columnLabel, int scale) {
-
-    return null;
+  public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel), scale);
   }
 
   public byte[] getBytes(String columnLabel) throws SQLException {
-    return getString(columnLabel).getBytes();
+    return getBytes(findColumn(columnLabel));
   }
 
-  public Date getDate(String columnLabel) {
-
-    return null;
+  public Date getDate(String columnLabel) throws SQLException {
+    return getDate(findColumn(columnLabel));
   }
 
-  public Time getTime(String columnLabel) {
-
-    return null;
+  public Time getTime(String columnLabel) throws SQLException {
+    return getTime(findColumn(columnLabel));
   }
 
-  public Timestamp getTimestamp(String columnLabel) {
-
-    return null;
+  public Timestamp getTimestamp(String columnLabel) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
   }
 
   public InputStream getAsciiStream(String columnLabel) {
@@ -267,37 +316,57 @@ public class ListResultSet implements ResultSet {
   public ResultSetMetaData getMetaData() throws SQLException {
     checkClosed();
 
-    if (data == null) {
-      return new MongoResultSetMetaData(null, new String[0], new int[0]);
-    }
-
     int[] columnJavaTypes = new int[columnNames.length];
     for (int i = 0; i < columnNames.length; i++) {
-      columnJavaTypes[i] = Types.OTHER;
+      columnJavaTypes[i] = store.getType(i);
     }
 
     return new MongoResultSetMetaData(null, columnNames, columnJavaTypes);
   }
 
   public Object getObject(int columnIndex) throws SQLException {
-    if (currentRow >= data.size()) {
+    checkCell(columnIndex);
+    Object value = store.get(currentRow, columnIndex - 1);
+    wasNull = value == null;
+    return value;
+  }
+
+  private void checkCell(int columnIndex) throws SQLException {
+    if (currentRow < 0 || currentRow >= store.getRowCount()) {
       throw new SQLException("ResultSet exhausted, request currentRow = " + currentRow);
     }
-    int adjustedColumnIndex = columnIndex - 1;
-    if (adjustedColumnIndex >= data.get(currentRow).length) {
+    if (columnIndex < 1 || columnIndex > store.getRowLength(currentRow)) {
       throw new SQLException("Column index does not exist: " + columnIndex);
     }
-    return data.get(currentRow)[adjustedColumnIndex];
   }
 
-  public Object getObject(String columnLabel) {
-
-    return null;
+  public Object getObject(String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
   }
 
-  public int findColumn(String columnLabel) {
-
-    return 0;
+  /**
+   * Exact labels are found with a hash lookup, other letter cases fall back to a case-insensitive map.
+   */
+  public int findColumn(String columnLabel) throws SQLException {
+    if (columnNames == null) {
+      throw new SQLException("Use of columnLabel requires setColumnNames to be called first.");
+    }
+    if (columnIndexes == null) {
+      Map<String, Integer> indexes = new HashMap<>();
+      Map<String, Integer> indexesIgnoreCase = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (int i = columnNames.length - 1; i >= 0; i--) {
+        indexes.put(columnNames[i], i + 1);
+        indexesIgnoreCase.put(columnNames[i], i + 1);
+      }
+      columnIndexes = indexes;
+      columnIndexesIgnoreCase = indexesIgnoreCase;
+    }
+    Integer index = columnIndexes.get(columnLabel);
+    if (index == null) index = columnIndexesIgnoreCase.get(columnLabel);
+    if (index == null) {
+      throw new SQLException("Column " + columnLabel + " doesn't exist in this ResultSet");
+    }
+    return index;
   }
 
   public Reader getCharacterStream(int columnIndex) {
@@ -310,14 +379,13 @@ public class ListResultSet implements ResultSet {
     return null;
   }
 
-  public BigDecimal getBigDecimal(int columnIndex) {
-
-    return null;
+  public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+    Object value = getObject(columnIndex);
+    return value != null ? ValueConverter.of(value).getBigDecimal(value) : null;
   }
 
-  public BigDecimal getBigDecimal(String columnLabel) {
-
-    return null;
+  public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
   }
 
   public boolean isBeforeFirst() {
@@ -707,34 +775,28 @@ public class ListResultSet implements ResultSet {
     return null;
   }
 
-  public Date getDate(int columnIndex, Calendar cal) {
-
-    return null;
+  public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+    return getDate(columnIndex);
   }
 
-  public Date getDate(String columnLabel, Calendar cal) {
-
-    return null;
+  public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+    return getDate(findColumn(columnLabel));
   }
 
-  public Time getTime(int columnIndex, Calendar cal) {
-
-    return null;
+  public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+    return getTime(columnIndex);
   }
 
-  public Time getTime(String columnLabel, Calendar cal) {
-
-    return null;
+  public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+    return getTime(findColumn(columnLabel));
   }
 
-  public Timestamp getTimestamp(int columnIndex, Calendar cal) {
-
-    return null;
+  public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+    return getTimestamp(columnIndex);
   }
 
-  public Timestamp getTimestamp(String columnLabel, Calendar cal) {
-
-    return null;
+  public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
   }
 
   public URL getURL(int columnIndex) {
@@ -1021,12 +1083,15 @@ public class ListResultSet implements ResultSet {
   }
 
   @Override
-  public <T> T getObject(int columnIndex, Class<T> type) {
-    return null;
+  public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+    Object value = getObject(columnIndex);
+    if (value == null || type.isInstance(value)) return type.cast(value);
+    if (type == String.class) return type.cast(value.toString());
+    throw ValueConverter.cannotConvert(value, type.getSimpleName());
   }
 
   @Override
-  public <T> T getObject(String columnLabel, Class<T> type) {
-    return null;
+  public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+    return getObject(findColumn(columnLabel), type);
   }
 }
@@ -144,6 +144,16 @@ public class MongoResultSetMetaData implements ResultSetMetaData {
     switch (javaTypes[column - 1]) {
       case Types.JAVA_OBJECT:
         return "map";
+      case Types.ARRAY:
+        return "array";
+      case Types.INTEGER:
+        return "integer";
+      case Types.DOUBLE:
+        return "double";
+      case Types.DATE:
+        return "date";
+      case Types.TIMESTAMP:
+        return "timestamp";
       default:
         return "varchar";
     }
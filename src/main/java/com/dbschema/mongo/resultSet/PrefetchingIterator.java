@@ -0,0 +1,103 @@
+package com.dbschema.mongo.resultSet;
+
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.client.MongoCursor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a driver cursor on a virtual thread ahead of the consumer, so {@code getMore} round trips overlap with
+ * processing of the documents already received. At most {@code capacity} documents are buffered,
+ * the reader waits while the buffer is full.
+ * <p>
+ * Only driver cursors can be read this way: shell cursors belong to a polyglot context which must not be
+ * used by several threads.
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, Closeable {
+  private static final Object END = new Object();
+  private final MongoCursor<T> cursor;
+  private final BlockingQueue<Object> buffer;
+  private final Thread reader;
+  private volatile boolean isClosed;
+  private Object next;
+
+  public PrefetchingIterator(@NotNull MongoCursor<T> cursor, int capacity) {
+    this.cursor = cursor;
+    buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    reader = Thread.ofVirtual().name("MongoCursor Prefetch").start(this::read);
+  }
+
+  private void read() {
+    Object last = END;
+    try {
+      while (!isClosed && cursor.hasNext()) {
+        buffer.put(cursor.next());
+      }
+    }
+    catch (InterruptedException e) {
+      return;
+    }
+    catch (Throwable t) {
+      last = new Failure(t);
+    }
+    try {
+      buffer.put(last);
+    }
+    catch (InterruptedException ignored) {
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (isClosed) return false;
+    if (next == null) {
+      try {
+        next = buffer.take();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MongoInterruptedException("Interrupted while waiting for documents", e);
+      }
+    }
+    if (next instanceof Failure failure) {
+      if (failure.error() instanceof RuntimeException e) throw e;
+      if (failure.error() instanceof Error e) throw e;
+      throw new IllegalStateException(failure.error());
+    }
+    return next != END;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    @SuppressWarnings("unchecked") T result = (T) next;
+    next = null;
+    return result;
+  }
+
+  /**
+   * Can be called from any thread. Stops the reader and kills the cursor on the server.
+   */
+  @Override
+  public void close() {
+    if (isClosed) return;
+    isClosed = true;
+    reader.interrupt();
+    try {
+      cursor.close();
+    }
+    finally {
+      buffer.clear();
+      // wake up a consumer waiting for the next document
+      buffer.offer(END);
+    }
+  }
+
+  private record Failure(@NotNull Throwable error) {
+  }
+}
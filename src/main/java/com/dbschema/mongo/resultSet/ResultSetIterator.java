@@ -1,12 +1,18 @@
 package com.dbschema.mongo.resultSet;
 
+import com.dbschema.mongo.Cancellation;
 import com.dbschema.mongo.SQLAlreadyClosedException;
+import com.dbschema.mongo.Util;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.mongosh.result.Cursor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.URL;
 import java.sql.*;
 import java.util.Calendar;
@@ -16,36 +22,101 @@ import java.util.Map;
 
 public class ResultSetIterator implements ResultSet {
   private boolean isClosed = false;
+  private volatile boolean isCancelled = false;
   private final Iterator<?> iterator;
+  private final @Nullable Runnable onClose;
+  private final int maxRows;
+  private int rowCount;
+  private boolean isIteratorClosed = false;
   protected Object actual;
+  private boolean wasNull;
+  private ValueConverter[] converters;
+  private Class<?>[] convertedClasses;
 
   public ResultSetIterator() {
-    this.iterator = null;
+    this((Iterator<?>) null);
   }
 
   public ResultSetIterator(Iterable<?> iterable) {
-    iterator = (iterable != null ? iterable.iterator() : null);
+    this(iterable != null ? iterable.iterator() : null);
   }
 
   public ResultSetIterator(Iterator<?> iterator) {
+    this(iterator, 0, null);
+  }
+
+  /**
+   * @param maxRows iteration stops and the iterator is closed after this many rows, 0 means no limit
+   * @param onClose called once after the iterator is closed
+   */
+  public ResultSetIterator(Iterator<?> iterator, int maxRows, @Nullable Runnable onClose) {
     this.iterator = iterator;
+    this.maxRows = Math.max(0, maxRows);
+    this.onClose = onClose;
   }
 
-  @Override
-  public Object getObject(int columnIndex) throws SQLException {
+  /**
+   * @return value of the column in the current row
+   */
+  protected Object getValue(int columnIndex) throws SQLException {
     if (columnIndex != 1) throw new SQLException("Invalid column index: " + columnIndex);
     return actual;
   }
 
+  protected int getColumnCount() {
+    return 1;
+  }
+
+  /**
+   * Converter for the class of the value, cached per column until a value of another class is read.
+   */
+  @NotNull
+  private ValueConverter converter(int columnIndex, @NotNull Object value) {
+    if (converters == null) {
+      converters = new ValueConverter[getColumnCount()];
+      convertedClasses = new Class<?>[converters.length];
+    }
+    int i = columnIndex - 1;
+    if (convertedClasses[i] != value.getClass()) {
+      converters[i] = ValueConverter.of(value);
+      convertedClasses[i] = value.getClass();
+    }
+    return converters[i];
+  }
+
+  @NotNull
+  private static SQLException outOfRange(long value, @NotNull String type) {
+    return new SQLException("Value " + value + " is out of " + type + " range");
+  }
+
+  @Override
+  public Object getObject(int columnIndex) throws SQLException {
+    Object value = getValue(columnIndex);
+    wasNull = value == null;
+    return value;
+  }
+
   @Override
-  public boolean next() {
+  public boolean next() throws SQLException {
+    if (isCancelled) throw new SQLException("Statement was cancelled", Cancellation.SQL_STATE);
     actual = null;
-    if (iterator != null) {
+    if (iterator == null || isIteratorClosed) return false;
+    if (maxRows > 0 && rowCount >= maxRows) {
+      // don't let the server produce rows nobody will read
+      closeIterator();
+      return false;
+    }
+    try {
       if (iterator.hasNext()) {
         actual = iterator.next();
+        rowCount++;
         return true;
       }
     }
+    catch (RuntimeException e) {
+      // getMore fails with the same errors as the query, e.g. when maxTimeMS is exceeded
+      throw Util.toSQLException(e, isCancelled);
+    }
     return false;
   }
 
@@ -53,17 +124,44 @@ public class ResultSetIterator implements ResultSet {
   public void close() throws SQLException {
     checkClosed();
     isClosed = true;
-    if (iterator instanceof Closeable) {
+    try {
+      closeIterator();
+    }
+    finally {
+      if (onClose != null) onClose.run();
+    }
+  }
+
+  private void closeIterator() throws SQLException {
+    if (isIteratorClosed) return;
+    isIteratorClosed = true;
+    try {
+      if (iterator instanceof Closeable) {
+        ((Closeable) iterator).close();
+      }
+      else if (iterator instanceof Cursor<?>) {
+        ((Cursor<?>) iterator).close();
+      }
+    }
+    catch (Throwable t) {
+      throw new SQLException(t);
+    }
+  }
+
+  /**
+   * Stops iteration from another thread. A driver cursor is closed right away, which kills it on the server.
+   * Shell cursors can only be used by the thread that evaluates scripts, they are closed when the result set is closed.
+   */
+  public void cancel() {
+    isCancelled = true;
+    if (iterator instanceof MongoCursor<?> || iterator instanceof PrefetchingIterator<?>) {
       try {
         ((Closeable) iterator).close();
       }
       catch (Throwable t) {
-        throw new SQLException(t);
+        System.err.println("Cannot close cursor: " + t.getMessage());
       }
     }
-    else if (iterator instanceof Cursor<?>) {
-      ((Cursor<?>) iterator).close();
-    }
   }
 
   private void checkClosed() throws SQLAlreadyClosedException {
@@ -82,53 +180,63 @@ public class ResultSetIterator implements ResultSet {
 
   @Override
   public boolean wasNull() {
-    return false;
+    return wasNull;
   }
 
   @Override
   public String getString(int columnIndex) throws SQLException {
-    Object o = getObject(columnIndex);
-    return o instanceof String ? (String) o : null;
+    Object value = getObject(columnIndex);
+    return value != null ? converter(columnIndex, value).getString(value) : null;
   }
 
   @Override
   public boolean getBoolean(int columnIndex) throws SQLException {
-    return Boolean.parseBoolean(getString(columnIndex));
+    Object value = getObject(columnIndex);
+    return value != null && converter(columnIndex, value).getBoolean(value);
   }
 
   @Override
   public byte getByte(int columnIndex) throws SQLException {
-    return Byte.parseByte(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) throw outOfRange(value, "byte");
+    return (byte) value;
   }
 
   @Override
   public short getShort(int columnIndex) throws SQLException {
-    return Short.parseShort(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw outOfRange(value, "short");
+    return (short) value;
   }
 
   @Override
   public int getInt(int columnIndex) throws SQLException {
-    return Integer.parseInt(getString(columnIndex));
+    long value = getLong(columnIndex);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw outOfRange(value, "int");
+    return (int) value;
   }
 
   @Override
   public long getLong(int columnIndex) throws SQLException {
-    return Long.parseLong(getString(columnIndex));
+    Object value = getObject(columnIndex);
+    return value != null ? converter(columnIndex, value).getLong(value) : 0;
   }
 
   @Override
   public float getFloat(int columnIndex) throws SQLException {
-    return Float.parseFloat(getString(columnIndex));
+    return (float) getDouble(columnIndex);
   }
 
   @Override
   public double getDouble(int columnIndex) throws SQLException {
-    return Double.parseDouble(getString(columnIndex));
+    Object value = getObject(columnIndex);
+    return value != null ? converter(columnIndex, value).getDouble(value) : 0;
   }
 
   @Override
-  public BigDecimal getBigDecimal(int columnIndex, int scale) {
-    return null;
+  public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+    BigDecimal value = getBigDecimal(columnIndex);
+    return value != null ? value.setScale(scale, RoundingMode.HALF_UP) : null;
   }
 
   @Override
@@ -137,18 +245,21 @@ public class ResultSetIterator implements ResultSet {
   }
 
   @Override
-  public Date getDate(int columnIndex) {
-    return null;
+  public Date getDate(int columnIndex) throws SQLException {
+    Timestamp timestamp = getTimestamp(columnIndex);
+    return timestamp != null ? new Date(timestamp.getTime()) : null;
   }
 
   @Override
-  public Time getTime(int columnIndex) {
-    return null;
+  public Time getTime(int columnIndex) throws SQLException {
+    Timestamp timestamp = getTimestamp(columnIndex);
+    return timestamp != null ? new Time(timestamp.getTime()) : null;
   }
 
   @Override
-  public Timestamp getTimestamp(int columnIndex) {
-    return null;
+  public Timestamp getTimestamp(int columnIndex) throws SQLException {
+    Object value = getObject(columnIndex);
+    return value != null ? converter(columnIndex, value).getTimestamp(value) : null;
   }
 
   @Override
@@ -167,68 +278,68 @@ public class ResultSetIterator implements ResultSet {
   }
 
   @Override
-  public String getString(String columnLabel) {
-    return null;
+  public String getString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
   }
 
   @Override
-  public boolean getBoolean(String columnLabel) {
-    return false;
+  public boolean getBoolean(String columnLabel) throws SQLException {
+    return getBoolean(findColumn(columnLabel));
   }
 
   @Override
-  public byte getByte(String columnLabel) {
-    return 0;
+  public byte getByte(String columnLabel) throws SQLException {
+    return getByte(findColumn(columnLabel));
   }
 
   @Override
-  public short getShort(String columnLabel) {
-    return 0;
+  public short getShort(String columnLabel) throws SQLException {
+    return getShort(findColumn(columnLabel));
   }
 
   @Override
-  public int getInt(String columnLabel) {
-    return 0;
+  public int getInt(String columnLabel) throws SQLException {
+    return getInt(findColumn(columnLabel));
   }
 
   @Override
-  public long getLong(String columnLabel) {
-    return 0;
+  public long getLong(String columnLabel) throws SQLException {
+    return getLong(findColumn(columnLabel));
   }
 
   @Override
-  public float getFloat(String columnLabel) {
-    return 0;
+  public float getFloat(String columnLabel) throws SQLException {
+    return getFloat(findColumn(columnLabel));
   }
 
   @Override
-  public double getDouble(String columnLabel) {
-    return 0;
+  public double getDouble(String columnLabel) throws SQLException {
+    return getDouble(findColumn(columnLabel));
   }
 
   @Override
-  public BigDecimal getBigDecimal(String columnLabel, int scale) {
-    return null;
+  public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel), scale);
   }
 
   @Override
-  public byte[] getBytes(String columnLabel) {
-    return new byte[0];
+  public byte[] getBytes(String columnLabel) throws SQLException {
+    return getBytes(findColumn(columnLabel));
   }
 
   @Override
-  public Date getDate(String columnLabel) {
-    return null;
+  public Date getDate(String columnLabel) throws SQLException {
+    return getDate(findColumn(columnLabel));
   }
 
   @Override
-  public Time getTime(String columnLabel) {
-    return null;
+  public Time getTime(String columnLabel) throws SQLException {
+    return getTime(findColumn(columnLabel));
   }
 
   @Override
-  public Timestamp getTimestamp(String columnLabel) {
-    return null;
+  public Timestamp getTimestamp(String columnLabel) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
   }
 
   @Override
@@ -263,13 +374,14 @@ public class ResultSetIterator implements ResultSet {
 
 
   @Override
-  public Object getObject(String columnLabel) {
-    return null;
+  public Object getObject(String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
   }
 
   @Override
-  public int findColumn(String columnLabel) {
-    return 0;
+  public int findColumn(String columnLabel) throws SQLException {
+    if (!"map".equalsIgnoreCase(columnLabel)) throw new SQLException("Invalid column label: " + columnLabel);
+    return 1;
   }
 
   @Override
@@ -283,13 +395,14 @@ public class ResultSetIterator implements ResultSet {
   }
 
   @Override
-  public BigDecimal getBigDecimal(int columnIndex) {
-    return null;
+  public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+    Object value = getObject(columnIndex);
+    return value != null ? converter(columnIndex, value).getBigDecimal(value) : null;
   }
 
   @Override
-  public BigDecimal getBigDecimal(String columnLabel) {
-    return null;
+  public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
   }
 
   @Override
@@ -678,33 +791,33 @@ public class ResultSetIterator implements ResultSet {
   }
 
   @Override
-  public Date getDate(int columnIndex, Calendar cal) {
-    return null;
+  public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+    return getDate(columnIndex);
   }
 
   @Override
-  public Date getDate(String columnLabel, Calendar cal) {
-    return null;
+  public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+    return getDate(findColumn(columnLabel));
   }
 
   @Override
-  public Time getTime(int columnIndex, Calendar cal) {
-    return null;
+  public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+    return getTime(columnIndex);
   }
 
   @Override
-  public Time getTime(String columnLabel, Calendar cal) {
-    return null;
+  public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+    return getTime(findColumn(columnLabel));
   }
 
   @Override
-  public Timestamp getTimestamp(int columnIndex, Calendar cal) {
-    return null;
+  public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+    return getTimestamp(columnIndex);
   }
 
   @Override
-  public Timestamp getTimestamp(String columnLabel, Calendar cal) {
-    return null;
+  public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
   }
 
   @Override
@@ -993,13 +1106,26 @@ public class ResultSetIterator implements ResultSet {
   }
 
   @Override
-  public <T> T getObject(int columnIndex, Class<T> type) {
-    return null;
+  public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+    Object value;
+    if (type == String.class) value = getString(columnIndex);
+    else if (type == Integer.class) value = getInt(columnIndex);
+    else if (type == Long.class) value = getLong(columnIndex);
+    else if (type == Double.class) value = getDouble(columnIndex);
+    else if (type == Boolean.class) value = getBoolean(columnIndex);
+    else if (type == BigDecimal.class) value = getBigDecimal(columnIndex);
+    else if (type == Timestamp.class) value = getTimestamp(columnIndex);
+    else if (type == Date.class) value = getDate(columnIndex);
+    else {
+      value = getObject(columnIndex);
+      if (value != null && !type.isInstance(value)) throw ValueConverter.cannotConvert(value, type.getSimpleName());
+    }
+    return wasNull ? null : type.cast(value);
   }
 
   @Override
-  public <T> T getObject(String columnLabel, Class<T> type) {
-    return null;
+  public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+    return getObject(findColumn(columnLabel), type);
   }
 
   @Override
@@ -0,0 +1,265 @@
+package com.dbschema.mongo.resultSet;
+
+import org.bson.BsonTimestamp;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Reads values of one Java class as JDBC types without going through strings.
+ * <p>
+ * Result sets pick a converter with {@link #of(Object)} and keep it for a column while the class of its values
+ * stays the same, so typed getters don't repeat the type checks for every cell.
+ */
+enum ValueConverter {
+  INTEGRAL {
+    @Override
+    long getLong(@NotNull Object value) {
+      return ((Number) value).longValue();
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) {
+      return ((Number) value).doubleValue();
+    }
+
+    @Override
+    @NotNull
+    BigDecimal getBigDecimal(@NotNull Object value) {
+      return BigDecimal.valueOf(((Number) value).longValue());
+    }
+
+    @Override
+    boolean getBoolean(@NotNull Object value) {
+      return ((Number) value).longValue() != 0;
+    }
+  },
+  FLOATING {
+    @Override
+    long getLong(@NotNull Object value) {
+      return ((Number) value).longValue();
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) {
+      return ((Number) value).doubleValue();
+    }
+
+    @Override
+    @NotNull
+    BigDecimal getBigDecimal(@NotNull Object value) throws SQLException {
+      try {
+        return BigDecimal.valueOf(((Number) value).doubleValue());
+      }
+      catch (NumberFormatException e) {
+        throw cannotConvert(value, "BigDecimal");
+      }
+    }
+
+    @Override
+    boolean getBoolean(@NotNull Object value) {
+      return ((Number) value).doubleValue() != 0;
+    }
+  },
+  DECIMAL128 {
+    @Override
+    long getLong(@NotNull Object value) throws SQLException {
+      return getBigDecimal(value).longValue();
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) {
+      return ((Decimal128) value).doubleValue();
+    }
+
+    @Override
+    @NotNull
+    BigDecimal getBigDecimal(@NotNull Object value) throws SQLException {
+      try {
+        return ((Decimal128) value).bigDecimalValue();
+      }
+      catch (ArithmeticException e) {
+        throw cannotConvert(value, "BigDecimal");
+      }
+    }
+  },
+  NUMBER {
+    @Override
+    long getLong(@NotNull Object value) {
+      return ((Number) value).longValue();
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) {
+      return ((Number) value).doubleValue();
+    }
+
+    @Override
+    @NotNull
+    BigDecimal getBigDecimal(@NotNull Object value) throws SQLException {
+      if (value instanceof BigDecimal decimal) return decimal;
+      return STRING.getBigDecimal(value.toString());
+    }
+  },
+  DATE {
+    @Override
+    long getLong(@NotNull Object value) {
+      return ((Date) value).getTime();
+    }
+
+    @Override
+    @NotNull
+    Timestamp getTimestamp(@NotNull Object value) {
+      return value instanceof Timestamp timestamp ? timestamp : new Timestamp(((Date) value).getTime());
+    }
+  },
+  BSON_TIMESTAMP {
+    @Override
+    long getLong(@NotNull Object value) {
+      return ((BsonTimestamp) value).getValue();
+    }
+
+    @Override
+    @NotNull
+    Timestamp getTimestamp(@NotNull Object value) {
+      return new Timestamp(((BsonTimestamp) value).getTime() * 1000L);
+    }
+  },
+  OBJECT_ID {
+    @Override
+    @NotNull
+    String getString(@NotNull Object value) {
+      return ((ObjectId) value).toHexString();
+    }
+
+    @Override
+    @NotNull
+    Timestamp getTimestamp(@NotNull Object value) {
+      return new Timestamp(((ObjectId) value).getTimestamp() * 1000L);
+    }
+  },
+  BOOLEAN {
+    @Override
+    long getLong(@NotNull Object value) {
+      return (Boolean) value ? 1 : 0;
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) {
+      return (Boolean) value ? 1 : 0;
+    }
+
+    @Override
+    boolean getBoolean(@NotNull Object value) {
+      return (Boolean) value;
+    }
+  },
+  STRING {
+    @Override
+    long getLong(@NotNull Object value) throws SQLException {
+      try {
+        return Long.parseLong(((String) value).trim());
+      }
+      catch (NumberFormatException e) {
+        // e.g. "1.0" or "1e3"
+        return getBigDecimal(value).longValue();
+      }
+    }
+
+    @Override
+    double getDouble(@NotNull Object value) throws SQLException {
+      try {
+        return Double.parseDouble(((String) value).trim());
+      }
+      catch (NumberFormatException e) {
+        throw cannotConvert(value, "double");
+      }
+    }
+
+    @Override
+    @NotNull
+    BigDecimal getBigDecimal(@NotNull Object value) throws SQLException {
+      try {
+        return new BigDecimal(((String) value).trim());
+      }
+      catch (NumberFormatException e) {
+        throw cannotConvert(value, "BigDecimal");
+      }
+    }
+
+    @Override
+    @NotNull
+    Timestamp getTimestamp(@NotNull Object value) throws SQLException {
+      try {
+        return Timestamp.valueOf(((String) value).trim());
+      }
+      catch (IllegalArgumentException e) {
+        throw cannotConvert(value, "Timestamp");
+      }
+    }
+
+    @Override
+    boolean getBoolean(@NotNull Object value) {
+      String s = ((String) value).trim();
+      return s.equalsIgnoreCase("true") || s.equals("1");
+    }
+  },
+  OTHER;
+
+  @NotNull
+  static ValueConverter of(@NotNull Object value) {
+    return switch (value) {
+      case Integer ignored -> INTEGRAL;
+      case Long ignored -> INTEGRAL;
+      case Short ignored -> INTEGRAL;
+      case Byte ignored -> INTEGRAL;
+      case Double ignored -> FLOATING;
+      case Float ignored -> FLOATING;
+      case Decimal128 ignored -> DECIMAL128;
+      case Number ignored -> NUMBER;
+      case Date ignored -> DATE;
+      case BsonTimestamp ignored -> BSON_TIMESTAMP;
+      case ObjectId ignored -> OBJECT_ID;
+      case Boolean ignored -> BOOLEAN;
+      case String ignored -> STRING;
+      default -> OTHER;
+    };
+  }
+
+  long getLong(@NotNull Object value) throws SQLException {
+    throw cannotConvert(value, "long");
+  }
+
+  double getDouble(@NotNull Object value) throws SQLException {
+    throw cannotConvert(value, "double");
+  }
+
+  @NotNull
+  BigDecimal getBigDecimal(@NotNull Object value) throws SQLException {
+    throw cannotConvert(value, "BigDecimal");
+  }
+
+  @NotNull
+  Timestamp getTimestamp(@NotNull Object value) throws SQLException {
+    throw cannotConvert(value, "Timestamp");
+  }
+
+  boolean getBoolean(@NotNull Object value) throws SQLException {
+    throw cannotConvert(value, "boolean");
+  }
+
+  @NotNull
+  String getString(@NotNull Object value) {
+    return value.toString();
+  }
+
+  @NotNull
+  static SQLException cannotConvert(@NotNull Object value, @NotNull String type) {
+    return new SQLException("Cannot convert " + value.getClass().getSimpleName() + " value '" + value + "' to " + type);
+  }
+}
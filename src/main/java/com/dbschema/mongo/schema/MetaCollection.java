@@ -1,19 +1,24 @@
 package com.dbschema.mongo.schema;
 
 import com.mongodb.MongoQueryException;
+import com.mongodb.MongoServerException;
 import com.mongodb.client.ListIndexesIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
+import org.bson.Document;
 import org.bson.conversions.Bson;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MetaCollection extends MetaJson {
   private boolean isFirstDiscover = true;
@@ -22,11 +27,27 @@ public class MetaCollection extends MetaJson {
   public final List<MetaIndex> metaIndexes = new ArrayList<>();
 
   public MetaCollection(final MongoCollection<?> mongoCollection, final int fetchDocumentsForMeta) {
+    this(mongoCollection, fetchDocumentsForMeta, false);
+  }
+
+  /**
+   * @param inferOnServer infer fields with an aggregation instead of reading the sampled documents,
+   *                      see {@link ServerSchemaInference}
+   */
+  public MetaCollection(final MongoCollection<?> mongoCollection, final int fetchDocumentsForMeta, final boolean inferOnServer) {
     super(null, mongoCollection.getNamespace().getCollectionName(), TYPE_MAP);
     db = mongoCollection.getNamespace().getDatabaseName();
-    discoverCollectionSampleRecords(mongoCollection, fetchDocumentsForMeta);
+    if (inferOnServer) inferCollectionSchema(mongoCollection, fetchDocumentsForMeta);
+    else discoverCollectionSampleRecords(mongoCollection, fetchDocumentsForMeta);
     discoverIndexes(mongoCollection);
+  }
 
+  /**
+   * Collection without discovered fields, they are added by the caller or with {@link #discoverDocument(Object)}.
+   */
+  MetaCollection(final String db, final String name) {
+    super(null, name, TYPE_MAP);
+    this.db = db;
   }
 
   public MetaIndex createMetaIndex(String name, boolean pk, boolean unique) {
@@ -40,7 +61,7 @@ public class MetaCollection extends MetaJson {
     try (MongoCursor<?> cursor = mongoCollection.aggregate(pipeline).iterator()) {
       int iteration = 0;
       while (cursor.hasNext() && ++iteration <= iterations) {
-        discoverMap(this, cursor.next(), true);
+        discoverDocument(cursor.next());
       }
     }
     catch (MongoQueryException e) {
@@ -49,6 +70,22 @@ public class MetaCollection extends MetaJson {
     }
   }
 
+  private void inferCollectionSchema(MongoCollection<?> mongoCollection, int sampleSize) {
+    if (sampleSize <= 0) return;
+    try {
+      ServerSchemaInference.apply(this, mongoCollection.aggregate(ServerSchemaInference.pipeline(sampleSize), Document.class));
+    }
+    catch (MongoQueryException e) {
+      if (e.getErrorCode() == 13) return; // Authorized
+      throw e;
+    }
+    isFirstDiscover = false;
+  }
+
+  void discoverDocument(Object document) {
+    discoverMap(this, document, true);
+  }
+
   private void discoverMap(MetaJson parentMap, Object object, boolean updateMandatory) {
     if (object instanceof Map<?, ?> map) {
         for (Object key : map.keySet()) {
@@ -107,6 +144,7 @@ public class MetaCollection extends MetaJson {
   private static final String KEY_NAME = "name";
   private static final String KEY_UNIQUE = "unique";
   private static final String KEY_KEY = "key";
+  private static final int UNRECOGNIZED_PIPELINE_STAGE = 40324;
 
   private void discoverIndexes(MongoCollection<?> dbCollection) {
     ListIndexesIterable<?> iterable;
@@ -117,38 +155,97 @@ public class MetaCollection extends MetaJson {
       System.err.println("Error listing indexes for " + dbCollection + "." + this + ". " + ex);
       return;
     }
-    for (Object indexObject : iterable) {
+    discoverIndexes(iterable, new CollectionFieldQueries(dbCollection));
+  }
+
+  void discoverIndexes(Iterable<?> indexObjects, FieldQueries queries) {
+    List<Map<?, ?>> indexes = new ArrayList<>();
+    Set<String> unresolvedPaths = new LinkedHashSet<>();
+    for (Object indexObject : indexObjects) {
+      if (!(indexObject instanceof Map<?, ?> indexMap) || !(indexMap.get(KEY_KEY) instanceof Map<?, ?> columnsMap)) continue;
+      indexes.add(indexMap);
+      for (Object fieldPath : columnsMap.keySet()) {
+        if (findField(String.valueOf(fieldPath)) == null) unresolvedPaths.add(String.valueOf(fieldPath));
+      }
+    }
+    try {
+      fetchAndRegisterFields(queries, unresolvedPaths);
+    }
+    catch (Throwable ex) {
+      System.err.println("Error fetching index fields " + unresolvedPaths + " of " + db + "." + name + ". " + ex);
+    }
+    for (Map<?, ?> indexMap : indexes) {
       try {
-        processIndex(dbCollection, indexObject);
+        processIndex(indexMap);
       }
       catch (Throwable ex) {
-        System.err.println("Error processing index " + indexObject + " of " + dbCollection + ". " + ex);
+        System.err.println("Error processing index " + indexMap + " of " + db + "." + name + ". " + ex);
       }
     }
   }
 
-  private void processIndex(MongoCollection<?> dbCollection, Object indexObject) {
-    if (!(indexObject instanceof Map<?, ?> indexMap)) return;
+  private void processIndex(Map<?, ?> indexMap) {
     final String indexName = String.valueOf(indexMap.get(KEY_NAME));
     final boolean indexIsPk = "_id_".equals(indexName);
     final boolean indexIsUnique = Boolean.TRUE.equals(indexMap.get(KEY_UNIQUE));
-    final Object columnsObj = indexMap.get(KEY_KEY);
-    if (!(columnsObj instanceof Map<?, ?> columnsMap)) return;
+    final Map<?, ?> columnsMap = (Map<?, ?>) indexMap.get(KEY_KEY);
     MetaIndex metaIndex = createMetaIndex(indexName, indexIsPk, indexIsUnique);
     for (Map.Entry<?, ?> fieldEntry : columnsMap.entrySet()) {
       String fieldPath = String.valueOf(fieldEntry.getKey());
       int direction = directionOf(fieldEntry.getValue());
-      MetaField metaField = resolveIndexField(dbCollection, fieldPath);
+      MetaField metaField = findField(fieldPath);
+      if (metaField == null) metaField = createStubField(fieldPath);
       metaIndex.addColumn(new MetaIndexField(metaField, direction));
     }
   }
 
-  private MetaField resolveIndexField(MongoCollection<?> dbCollection, String fieldPath) {
-    MetaField field = findField(fieldPath);
-    if (field != null) return field;
-    field = fetchAndRegisterField(dbCollection, fieldPath);
-    if (field != null) return field;
-    return createStubField(fieldPath);
+  /**
+   * Looks for one document with each of the paths in a single aggregation: every path gets a
+   * {@code $match} + {@code $limit} branch chained with {@code $unionWith}, so each branch can use its index.
+   * Servers before 4.4 don't support {@code $unionWith}, the paths are fetched one by one there.
+   * Paths of wildcard indexes can't be queried, they become stub fields.
+   */
+  private void fetchAndRegisterFields(FieldQueries queries, Set<String> fieldPaths) {
+    List<String> remaining = new ArrayList<>();
+    for (String fieldPath : fieldPaths) {
+      if (!fieldPath.contains("$")) remaining.add(fieldPath);
+    }
+    if (remaining.isEmpty()) return;
+    if (remaining.size() == 1) {
+      fetchAndRegisterField(queries, remaining.get(0));
+      return;
+    }
+    Iterator<?> documents = null;
+    try {
+      documents = queries.aggregate(fieldsPipeline(name, remaining)).iterator();
+      while (documents.hasNext() && !remaining.isEmpty()) {
+        Object document = documents.next();
+        remaining.removeIf(fieldPath -> registerFieldFromDoc(document, fieldPath) != null);
+      }
+    }
+    catch (MongoServerException e) {
+      if (e.getCode() == 13) return; // unauthorized to read
+      if (e.getCode() != UNRECOGNIZED_PIPELINE_STAGE) throw e;
+      for (String fieldPath : remaining) {
+        fetchAndRegisterField(queries, fieldPath);
+      }
+    }
+    finally {
+      // stops the cursor once all paths are found
+      if (documents instanceof MongoCursor<?> cursor) cursor.close();
+    }
+  }
+
+  static List<Bson> fieldsPipeline(String collectionName, List<String> fieldPaths) {
+    List<Bson> pipeline = new ArrayList<>(findOne(fieldPaths.get(0)));
+    for (String fieldPath : fieldPaths.subList(1, fieldPaths.size())) {
+      pipeline.add(Aggregates.unionWith(collectionName, findOne(fieldPath)));
+    }
+    return pipeline;
+  }
+
+  private static List<Bson> findOne(String fieldPath) {
+    return List.of(Aggregates.match(Filters.exists(fieldPath)), Aggregates.limit(1), Aggregates.project(Projections.include(fieldPath)));
   }
 
   // 1/-1 for ascending/descending; for "text"/"2dsphere"/"hashed" there is no asc/desc semantics.
@@ -156,14 +253,10 @@ public class MetaCollection extends MetaJson {
     return value instanceof Number ? ((Number) value).intValue() : 0;
   }
 
-  private MetaField fetchAndRegisterField(MongoCollection<?> coll, String fieldPath) {
-    try (MongoCursor<?> cursor = coll
-        .find(Filters.exists(fieldPath))
-        .projection(Projections.include(fieldPath))
-        .limit(1)
-        .iterator()) {
-      if (!cursor.hasNext()) return null;
-      return registerFieldFromDoc(cursor.next(), fieldPath);
+  private MetaField fetchAndRegisterField(FieldQueries queries, String fieldPath) {
+    try {
+      Object document = queries.findOne(fieldPath);
+      return document != null ? registerFieldFromDoc(document, fieldPath) : null;
     }
     catch (MongoQueryException e) {
       if (e.getErrorCode() == 13) return null; // unauthorized to read
@@ -184,10 +277,7 @@ public class MetaCollection extends MetaJson {
     String leaf = parts[parts.length - 1];
     if (!currentMap.containsKey(leaf)) return null;
     discoverMap(parentNode, Collections.singletonMap(leaf, currentMap.get(leaf)), false);
-    for (MetaField existing : parentNode.fields) {
-      if (existing.name.equals(leaf)) return existing;
-    }
-    return null;
+    return parentNode.getField(leaf);
   }
 
   // Type defaults to VARCHAR; the index stays visible in JDBC metadata.
@@ -198,14 +288,35 @@ public class MetaCollection extends MetaJson {
       parent = parent.createJsonMapField(parts[i], false);
     }
     String leaf = parts[parts.length - 1];
-    for (MetaField existing : parent.fields) {
-      if (existing.name.equals(leaf)) return existing;
-    }
+    MetaField existing = parent.getField(leaf);
+    if (existing != null) return existing;
     MetaField stub = new MetaField(parent, leaf, "String", java.sql.Types.VARCHAR);
     stub.setMandatory(false);
-    parent.fields.add(stub);
+    parent.addField(stub);
     return stub;
   }
 
+  /**
+   * Reads documents that contain paths of index fields.
+   */
+  interface FieldQueries {
+    Iterable<?> aggregate(List<Bson> pipeline);
 
+    /**
+     * @return a document with the path or null if there is none
+     */
+    Object findOne(String fieldPath);
+  }
+
+  private record CollectionFieldQueries(MongoCollection<?> collection) implements FieldQueries {
+    @Override
+    public Iterable<?> aggregate(List<Bson> pipeline) {
+      return collection.aggregate(pipeline);
+    }
+
+    @Override
+    public Object findOne(String fieldPath) {
+      return collection.find(Filters.exists(fieldPath)).projection(Projections.include(fieldPath)).first();
+    }
+  }
 }
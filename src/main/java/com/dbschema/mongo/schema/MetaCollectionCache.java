@@ -0,0 +1,166 @@
+package com.dbschema.mongo.schema;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Discovered collections of one connection, shared by all {@link java.sql.DatabaseMetaData} calls.
+ * <p>
+ * Entries expire {@code ttlMillis} after they were discovered and can be invalidated explicitly.
+ * Expired entries are dropped on cache misses.
+ * Entries of {@link #pinDatabase(String) pinned} databases don't expire, they are kept until they are invalidated,
+ * e.g. by a change stream that reports structural changes. Failed discoveries are not cached.
+ * Two threads may discover the same collection at the same time, the last result wins.
+ * A collection that was invalidated while it was being discovered is returned but not cached, the result may
+ * predate the change that caused the invalidation.
+ */
+public class MetaCollectionCache {
+  private final long ttlNanos;
+  private final LongSupplier clock;
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+  private final Set<String> pinnedDatabases = ConcurrentHashMap.newKeySet();
+  // bumped before entries are removed, the sum changes with every invalidation that affects a key
+  private final Map<Key, Long> generations = new ConcurrentHashMap<>();
+  private final Map<String, Long> databaseGenerations = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong lastPurge;
+
+  /**
+   * @param ttlMillis time to live of entries, 0 disables caching
+   */
+  public MetaCollectionCache(long ttlMillis) {
+    this(ttlMillis, System::nanoTime);
+  }
+
+  MetaCollectionCache(long ttlMillis, @NotNull LongSupplier clock) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    this.clock = clock;
+    lastPurge = new AtomicLong(clock.getAsLong());
+  }
+
+  /**
+   * @param discovery discovers the collection if it is not cached or expired, may return null on failure
+   */
+  @Nullable
+  public MetaCollection get(@NotNull String db, @NotNull String collection, @NotNull Supplier<@Nullable MetaCollection> discovery) {
+    Key key = new Key(db, collection);
+    Entry entry = entries.get(key);
+    long now = clock.getAsLong();
+    if (entry != null && (now - entry.discoveredAt() < ttlNanos || pinnedDatabases.contains(db))) {
+      hits.incrementAndGet();
+      return entry.collection();
+    }
+    misses.incrementAndGet();
+    purgeExpired(now);
+    long generation = getGeneration(key);
+    MetaCollection discovered = discovery.get();
+    if (discovered != null && ttlNanos > 0) store(key, discovered, now, generation);
+    else entries.remove(key);
+    return discovered;
+  }
+
+  /**
+   * Drops expired entries of collections that are not read anymore, at most once per time to live.
+   */
+  private void purgeExpired(long now) {
+    long last = lastPurge.get();
+    if (now - last < ttlNanos || !lastPurge.compareAndSet(last, now)) return;
+    entries.entrySet().removeIf(e -> now - e.getValue().discoveredAt() >= ttlNanos && !pinnedDatabases.contains(e.getKey().db()));
+  }
+
+  /**
+   * @return a value that changes when the collection is invalidated, pass it to {@link #put(MetaCollection, long)}
+   */
+  public long getGeneration(@NotNull String db, @NotNull String collection) {
+    return getGeneration(new Key(db, collection));
+  }
+
+  private long getGeneration(@NotNull Key key) {
+    return generation.get() + databaseGenerations.getOrDefault(key.db(), 0L) + generations.getOrDefault(key, 0L);
+  }
+
+  /**
+   * Stores the entry unless the key was invalidated after {@code generation} was read. Checked while the key is locked,
+   * an invalidation either changes the generation before the check or removes the entry after it.
+   */
+  private void store(@NotNull Key key, @NotNull MetaCollection collection, long discoveredAt, long generation) {
+    entries.compute(key, (k, current) -> getGeneration(k) == generation ? new Entry(collection, discoveredAt) : current);
+  }
+
+  /**
+   * @return false if the time to live is 0 and nothing is cached
+   */
+  public boolean isEnabled() {
+    return ttlNanos > 0;
+  }
+
+  /**
+   * Replaces the entry with a collection that was discovered elsewhere, e.g. refreshed in background.
+   *
+   * @param generation {@link #getGeneration(String, String)} read before the discovery started,
+   *                   the collection is not stored if it was invalidated since
+   */
+  public void put(@NotNull MetaCollection collection, long generation) {
+    if (ttlNanos > 0) store(new Key(collection.db, collection.name), collection, clock.getAsLong(), generation);
+  }
+
+  /**
+   * Keeps entries of the database until they are invalidated.
+   */
+  public void pinDatabase(@NotNull String db) {
+    pinnedDatabases.add(db);
+  }
+
+  /**
+   * Lets entries of the database expire again, entries that are older than the time to live are dropped.
+   */
+  public void unpinDatabase(@NotNull String db) {
+    pinnedDatabases.remove(db);
+    long now = clock.getAsLong();
+    entries.entrySet().removeIf(e -> e.getKey().db().equals(db) && now - e.getValue().discoveredAt() >= ttlNanos);
+  }
+
+  public void invalidate(@NotNull String db, @NotNull String collection) {
+    Key key = new Key(db, collection);
+    generations.merge(key, 1L, Long::sum);
+    entries.remove(key);
+  }
+
+  public void invalidateDatabase(@NotNull String db) {
+    databaseGenerations.merge(db, 1L, Long::sum);
+    entries.keySet().removeIf(key -> key.db().equals(db));
+  }
+
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private record Key(@NotNull String db, @NotNull String collection) {
+  }
+
+  private record Entry(@NotNull MetaCollection collection, long discoveredAt) {
+  }
+}
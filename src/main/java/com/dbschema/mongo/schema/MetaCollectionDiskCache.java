@@ -0,0 +1,233 @@
+package com.dbschema.mongo.schema;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Discovered collections saved as JSON files, so reconnecting to the same cluster doesn't have to sample
+ * all collections again.
+ * <p>
+ * Files are stored in a directory per cluster and named by hashes, neither the connection string nor the names
+ * of databases and collections appear in paths. Collections sampled with different settings are stored in different
+ * files. Each file keeps the {@link Fingerprint} of the collection taken
+ * before it was sampled, callers compare it with the current one to decide if the entry is still valid.
+ */
+public class MetaCollectionDiskCache {
+  private static final int VERSION = 1;
+
+  private final Path directory;
+  private final String settings;
+
+  /**
+   * @param cluster  identifies the cluster, e.g. the connection string; only its hash is used
+   * @param settings settings that change the sampled fields, e.g. the number of sampled documents
+   */
+  public MetaCollectionDiskCache(@NotNull Path baseDirectory, @NotNull String cluster, @NotNull String settings) {
+    directory = baseDirectory.resolve(sha256(cluster).substring(0, 32));
+    this.settings = settings;
+  }
+
+  @Nullable
+  public Stored load(@NotNull String db, @NotNull String collection) {
+    Path file = getFile(db, collection);
+    try {
+      Document document = Document.parse(Files.readString(file, StandardCharsets.UTF_8));
+      if (document.getInteger("version", 0) != VERSION ||
+          !db.equals(document.getString("db")) || !collection.equals(document.getString("collection"))) {
+        return null;
+      }
+      return new Stored(readCollection(document), Fingerprint.read(document.get("fingerprint", Document.class)));
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (Throwable t) {
+      System.err.println("Cannot read cached collection " + db + "." + collection + " from " + file + ". " + t);
+      return null;
+    }
+  }
+
+  public void store(@NotNull MetaCollection collection, @NotNull Fingerprint fingerprint) {
+    Path file = getFile(collection.db, collection.name);
+    Document document = new Document("version", VERSION)
+      .append("db", collection.db)
+      .append("collection", collection.name)
+      .append("fingerprint", fingerprint.write())
+      .append("fields", writeFields(collection))
+      .append("indexes", writeIndexes(collection));
+    try {
+      Files.createDirectories(directory);
+      // readers never see a partially written file
+      Path temp = Files.createTempFile(directory, "collection", ".tmp");
+      try {
+        Files.writeString(temp, document.toJson(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Cannot write cached collection " + collection.db + "." + collection.name + " to " + file + ". " + e);
+    }
+  }
+
+  public void delete(@NotNull String db, @NotNull String collection) {
+    try {
+      Files.deleteIfExists(getFile(db, collection));
+    }
+    catch (IOException e) {
+      System.err.println("Cannot delete cached collection " + db + "." + collection + ". " + e);
+    }
+  }
+
+  @NotNull
+  private Path getFile(@NotNull String db, @NotNull String collection) {
+    return directory.resolve(sha256(db + '\u0000' + collection + '\u0000' + settings) + ".json");
+  }
+
+  @NotNull
+  private static List<Document> writeFields(@NotNull MetaJson json) {
+    List<Document> fields = new ArrayList<>();
+    for (MetaField field : json.fields) {
+      Document document = new Document("name", field.name)
+        .append("typeName", field.typeName)
+        .append("type", field.type)
+        .append("mandatory", field.isMandatory());
+      if (field instanceof MetaJson child) document.append("fields", writeFields(child));
+      fields.add(document);
+    }
+    return fields;
+  }
+
+  @NotNull
+  private static List<Document> writeIndexes(@NotNull MetaCollection collection) {
+    List<Document> indexes = new ArrayList<>();
+    for (MetaIndex index : collection.metaIndexes) {
+      List<Document> fields = new ArrayList<>();
+      for (MetaIndexField indexField : index.metaIndexFields) {
+        fields.add(new Document("path", getPath(indexField.metaField)).append("direction", indexField.ascOrDesc));
+      }
+      indexes.add(new Document("name", index.name)
+                    .append("pk", index.pk)
+                    .append("unique", index.unique)
+                    .append("fields", fields));
+    }
+    return indexes;
+  }
+
+  /**
+   * @return names of the field and its parents below the collection
+   */
+  @NotNull
+  private static List<String> getPath(@NotNull MetaField field) {
+    Deque<String> path = new ArrayDeque<>();
+    for (MetaField f = field; f != null && !(f instanceof MetaCollection); f = f.parentJson) {
+      path.addFirst(f.name);
+    }
+    return new ArrayList<>(path);
+  }
+
+  @NotNull
+  private static MetaCollection readCollection(@NotNull Document document) {
+    MetaCollection collection = new MetaCollection(document.getString("db"), document.getString("collection"));
+    readFields(collection, document.getList("fields", Document.class));
+    for (Document index : document.getList("indexes", Document.class)) {
+      MetaIndex metaIndex = collection.createMetaIndex(index.getString("name"), index.getBoolean("pk"), index.getBoolean("unique"));
+      for (Document indexField : index.getList("fields", Document.class)) {
+        MetaField field = findField(collection, indexField.getList("path", String.class));
+        if (field != null) metaIndex.addColumn(new MetaIndexField(field, indexField.getInteger("direction")));
+      }
+    }
+    return collection;
+  }
+
+  private static void readFields(@NotNull MetaJson parent, @NotNull List<Document> fields) {
+    for (Document field : fields) {
+      String name = field.getString("name");
+      int type = field.getInteger("type");
+      boolean mandatory = field.getBoolean("mandatory");
+      if (type == MetaJson.TYPE_MAP || type == MetaJson.TYPE_LIST) {
+        MetaJson json = type == MetaJson.TYPE_MAP ? parent.createJsonMapField(name, mandatory) : parent.createJsonListField(name, mandatory);
+        readFields(json, field.getList("fields", Document.class, List.of()));
+      }
+      else {
+        parent.createField(name, field.getString("typeName"), type, mandatory);
+      }
+    }
+  }
+
+  @Nullable
+  private static MetaField findField(@NotNull MetaCollection collection, @NotNull List<String> path) {
+    MetaField current = collection;
+    for (String name : path) {
+      if (!(current instanceof MetaJson json)) return null;
+      current = json.getField(name);
+    }
+    return current == collection ? null : current;
+  }
+
+  @NotNull
+  private static String sha256(@NotNull String str) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8)));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public record Stored(@NotNull MetaCollection collection, @NotNull Fingerprint fingerprint) {
+  }
+
+  /**
+   * State of a collection that is cheap to read: its UUID, the estimated number of documents and a hash of its indexes.
+   * Any change of them means the collection has to be sampled again.
+   */
+  public record Fingerprint(@Nullable String uuid, long count, int indexesHash) {
+    /**
+     * @return null if the collection doesn't exist
+     */
+    @Nullable
+    public static Fingerprint of(@NotNull MongoDatabase database, @NotNull MongoCollection<?> collection) {
+      String name = collection.getNamespace().getCollectionName();
+      BsonDocument options = database.listCollections(BsonDocument.class).filter(Filters.eq("name", name)).first();
+      if (options == null) return null;
+      BsonValue uuid = options.isDocument("info") ? options.getDocument("info").get("uuid") : null;
+      List<Document> indexes = collection.listIndexes().into(new ArrayList<>());
+      return new Fingerprint(uuid instanceof BsonBinary binary ? HexFormat.of().formatHex(binary.getData()) : null,
+                             collection.estimatedDocumentCount(), indexes.hashCode());
+    }
+
+    @NotNull
+    private Document write() {
+      return new Document("uuid", uuid).append("count", count).append("indexesHash", indexesHash);
+    }
+
+    @NotNull
+    private static Fingerprint read(@NotNull Document document) {
+      return new Fingerprint(document.getString("uuid"), ((Number) document.get("count")).longValue(), document.getInteger("indexesHash"));
+    }
+  }
+}
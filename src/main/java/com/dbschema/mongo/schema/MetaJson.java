@@ -1,61 +1,150 @@
 package com.dbschema.mongo.schema;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Embedded document or list of documents. Fields are kept in discovery order and indexed by name,
+ * so discovering documents with many keys doesn't scan the fields for every key.
+ * {@link #fields} may be changed directly, the index is rebuilt on the next lookup then.
+ */
 public class MetaJson extends MetaField {
 
   public static final int TYPE_MAP = 4999544;
   public static final int TYPE_LIST = 4999545;
   public static final int TYPE_ARRAY = Types.ARRAY;
 
-  public final List<MetaField> fields = new ArrayList<>();
+  public final List<MetaField> fields = new FieldList();
+  // first field and first embedded document with the name, a scalar and a document may share a name
+  private final Map<String, MetaField> fieldsByName = new HashMap<>();
+  private final Map<String, MetaJson> jsonsByName = new HashMap<>();
+  // modification count of fields when the index was built
+  private int indexedModCount;
 
   public MetaJson(MetaJson parentJson, String name, int type) {
     super(parentJson, name, (type == TYPE_LIST ? "list" : "map"), type);
   }
 
   public void createField(String name, String typeName, int type, boolean mandatoryIfNew) {
-    for (MetaField column : fields) {
-      if (column.name.equals(name)) return;
-    }
+    if (getField(name) != null) return;
     MetaField field = new MetaField(this, name, typeName, type);
     field.setMandatory(mandatoryIfNew);
-    fields.add(field);
+    addField(field);
   }
 
   public MetaJson createJsonMapField(String name, boolean mandatoryIfNew) {
-    for (MetaField field : fields) {
-      if (field instanceof MetaJson && field.name.equals(name)) return (MetaJson) field;
-    }
+    MetaJson existing = getJson(name);
+    if (existing != null) return existing;
     MetaJson json = new MetaJson(this, name, TYPE_MAP);
-    fields.add(json);
     json.setMandatory(mandatoryIfNew);
+    addField(json);
     return json;
   }
 
   public MetaJson createJsonListField(String name, boolean mandatoryIfNew) {
-    for (MetaField field : fields) {
-      if (field instanceof MetaJson && field.name.equals(name)) return (MetaJson) field;
-    }
+    MetaJson existing = getJson(name);
+    if (existing != null) return existing;
     MetaJson json = new MetaJson(this, name, TYPE_LIST);
     json.setMandatory(mandatoryIfNew);
-    fields.add(json);
+    addField(json);
     return json;
   }
 
-  public MetaField findField(String name) {
-    for (MetaField other : fields) {
-      if (name.startsWith(other.getNameWithPath())) {
-        MetaField found = null;
-        if (other instanceof MetaJson) {
-          found = ((MetaJson) other).findField(name);
-        }
-        return found != null ? found : other;
-      }
+  void addField(MetaField field) {
+    FieldList list = (FieldList) fields;
+    boolean indexed = indexedModCount == list.modCount();
+    list.add(field);
+    if (!indexed) return;
+    index(field);
+    indexedModCount = list.modCount();
+  }
+
+  private void index(MetaField field) {
+    fieldsByName.putIfAbsent(field.name, field);
+    if (field instanceof MetaJson json) jsonsByName.putIfAbsent(field.name, json);
+  }
+
+  private void ensureIndexed() {
+    FieldList list = (FieldList) fields;
+    if (indexedModCount == list.modCount()) return;
+    fieldsByName.clear();
+    jsonsByName.clear();
+    for (MetaField field : list) {
+      index(field);
+    }
+    indexedModCount = list.modCount();
+  }
+
+  /**
+   * @return the first field with the name, embedded documents included
+   */
+  @Nullable
+  public MetaField getField(String name) {
+    ensureIndexed();
+    return fieldsByName.get(name);
+  }
+
+  @Nullable
+  private MetaJson getJson(String name) {
+    ensureIndexed();
+    return jsonsByName.get(name);
+  }
+
+  /**
+   * Finds a field by a dotted path as used in index keys, e.g. {@code address.city}.
+   * Fields form a trie by name, so the lookup takes one hash lookup per path element.
+   */
+  @Nullable
+  public MetaField findField(String path) {
+    MetaField current = this;
+    int start = 0;
+    while (start <= path.length()) {
+      if (!(current instanceof MetaJson json)) return null;
+      int end = path.indexOf('.', start);
+      if (end == -1) end = path.length();
+      String name = path.substring(start, end);
+      // a document may have a scalar and an embedded document with the same name, paths go through documents
+      MetaField next = end < path.length() ? json.getJson(name) : json.getField(name);
+      if (next == null) return null;
+      current = next;
+      start = end + 1;
     }
-    return null;
+    return current;
   }
 
+  /**
+   * Number of times the fields were iterated, lookups don't iterate them.
+   */
+  int getIterationCount() {
+    return ((FieldList) fields).iterations;
+  }
+
+  /**
+   * Exposes the modification count, which ArrayList doesn't bump on set().
+   */
+  private static final class FieldList extends ArrayList<MetaField> {
+    private int iterations;
+
+    int modCount() {
+      return modCount;
+    }
+
+    @Override
+    public Iterator<MetaField> iterator() {
+      iterations++;
+      return super.iterator();
+    }
+
+    @Override
+    public MetaField set(int index, MetaField element) {
+      modCount++;
+      return super.set(index, element);
+    }
+  }
 }
@@ -0,0 +1,183 @@
+package com.dbschema.mongo.schema;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Infers the fields of a collection on the server, so only a summary of the sample is transferred instead of
+ * whole documents.
+ * <p>
+ * The pipeline samples documents, turns every document into a list of {@code {p: path, t: type, n: objects}} entries
+ * with {@code $objectToArray} and {@code $type}, and groups them by path and type. Paths are arrays of names,
+ * so names with dots stay intact. Arrays whose elements are all documents get the type {@code documents}
+ * and their elements are walked like embedded documents. {@code n} is the number of documents below an entry,
+ * it tells how many times the fields below it could be present.
+ * Fields nested deeper than {@link #MAX_DEPTH} are not reported.
+ */
+final class ServerSchemaInference {
+  static final int MAX_DEPTH = 8;
+  private static final String OBJECT = "object";
+  private static final String DOCUMENTS = "documents";
+  private static final Map<String, String> TYPE_NAMES = Map.ofEntries(
+    Map.entry("string", "String"), Map.entry("int", "Integer"), Map.entry("long", "Long"), Map.entry("double", "Double"),
+    Map.entry("decimal", "Decimal128"), Map.entry("bool", "Boolean"), Map.entry("date", "Date"),
+    Map.entry("objectId", "ObjectId"), Map.entry("null", "String"), Map.entry("binData", "Binary"),
+    Map.entry("timestamp", "BsonTimestamp"), Map.entry("regex", "BsonRegularExpression"), Map.entry("javascript", "Code"),
+    Map.entry("javascriptWithScope", "CodeWithScope"), Map.entry("symbol", "Symbol"), Map.entry("minKey", "MinKey"),
+    Map.entry("maxKey", "MaxKey"), Map.entry("undefined", "BsonUndefined"), Map.entry("dbPointer", "BsonDbPointer"),
+    Map.entry("array", "array"));
+
+  private ServerSchemaInference() {
+  }
+
+  @NotNull
+  static List<Bson> pipeline(int sampleSize) {
+    Document root = new Document("p", List.of()).append("t", OBJECT).append("n", 1);
+    Document entries = new Document("$concatArrays", List.of(List.of(root), entries(MAX_DEPTH, "$$ROOT", List.of())));
+    return List.of(new Document("$sample", new Document("size", sampleSize)),
+                   new Document("$project", new Document("_id", 0).append("e", entries)),
+                   new Document("$unwind", "$e"),
+                   new Document("$group", new Document("_id", new Document("p", "$e.p").append("t", "$e.t"))
+                     .append("count", new Document("$sum", 1))
+                     .append("objects", new Document("$sum", "$e.n"))));
+  }
+
+  /**
+   * Entries of the fields of one document and of the documents below them, {@code depth} levels deep.
+   */
+  @NotNull
+  private static Document entries(int depth, @NotNull Object document, @NotNull Object prefix) {
+    String path = "$$path" + depth, type = "$$type" + depth, value = "$$value" + depth;
+    String isDocuments = "$$documents" + depth, children = "$$children" + depth;
+    Document allDocuments = new Document("$allElementsTrue", List.of(
+      new Document("$map", new Document("input", value).append("in", eq(new Document("$type", "$$this"), OBJECT)))));
+    Document entry = new Document("p", path)
+      .append("t", new Document("$cond", List.of(isDocuments, DOCUMENTS, type)))
+      .append("n", new Document("$size", children));
+    Object nested = depth > 1
+                    ? new Document("$reduce", new Document("input", children).append("initialValue", List.of())
+                      .append("in", new Document("$concatArrays", List.of("$$value", entries(depth - 1, "$$this", path)))))
+                    : List.of();
+    Document in = let(new Document("acc" + depth, "$$value")
+                        .append("path" + depth, new Document("$concatArrays", List.of(prefix, List.of("$$this.k"))))
+                        .append("value" + depth, "$$this.v")
+                        .append("type" + depth, new Document("$type", "$$this.v")),
+                      // $map fails on values that are not arrays, $cond evaluates only the chosen branch
+                      let(new Document("documents" + depth, cond(eq(type, "array"), allDocuments, false)),
+                          let(new Document("children" + depth,
+                                           cond(eq(type, OBJECT), List.of(value), cond(isDocuments, value, List.of()))),
+                              new Document("$concatArrays", List.of("$$acc" + depth, List.of(entry), nested)))));
+    return new Document("$reduce", new Document("input", new Document("$objectToArray", document))
+      .append("initialValue", List.of())
+      .append("in", in));
+  }
+
+  @NotNull
+  private static Document let(@NotNull Document vars, @NotNull Object in) {
+    return new Document("$let", new Document("vars", vars).append("in", in));
+  }
+
+  @NotNull
+  private static Document cond(@NotNull Object condition, @NotNull Object then, @NotNull Object otherwise) {
+    return new Document("$cond", List.of(condition, then, otherwise));
+  }
+
+  @NotNull
+  private static Document eq(@NotNull Object left, @NotNull Object right) {
+    return new Document("$eq", List.of(left, right));
+  }
+
+  /**
+   * Creates the fields described by the grouped pipeline results. A field is mandatory if it was present
+   * in every document or embedded document that could contain it. A field that was an embedded document in some
+   * documents is a map, one that was an array of documents is a list, otherwise it gets its most frequent type.
+   */
+  static void apply(@NotNull MetaCollection collection, @NotNull Iterable<Document> results) {
+    Map<List<String>, PathStats> paths = new HashMap<>();
+    for (Document result : results) {
+      Document id = result.get("_id", Document.class);
+      List<String> path = id.getList("p", String.class);
+      PathStats stats = paths.computeIfAbsent(path, p -> new PathStats());
+      long count = ((Number) result.get("count")).longValue();
+      stats.count += count;
+      stats.objects += ((Number) result.get("objects")).longValue();
+      stats.types.merge(id.getString("t"), count, Long::sum);
+    }
+    List<List<String>> sorted = new ArrayList<>(paths.keySet());
+    sorted.sort(Comparator.<List<String>>comparingInt(List::size).thenComparing(ServerSchemaInference::comparePaths));
+    Map<List<String>, MetaJson> jsons = new HashMap<>();
+    jsons.put(List.of(), collection);
+    for (List<String> path : sorted) {
+      if (path.isEmpty()) continue;
+      List<String> parentPath = path.subList(0, path.size() - 1);
+      MetaJson parent = jsons.get(parentPath);
+      PathStats parentStats = paths.get(parentPath);
+      if (parent == null || parentStats == null) continue;
+      PathStats stats = paths.get(path);
+      String name = path.get(path.size() - 1);
+      boolean mandatory = stats.count >= parentStats.objects;
+      if (stats.types.containsKey(OBJECT)) {
+        jsons.put(path, parent.createJsonMapField(name, mandatory));
+      }
+      else if (stats.types.containsKey(DOCUMENTS)) {
+        jsons.put(path, parent.createJsonListField(name, mandatory));
+      }
+      else {
+        String type = stats.getScalarType();
+        parent.createField(name, TYPE_NAMES.getOrDefault(type, type), getJavaType(type), mandatory);
+      }
+    }
+  }
+
+  private static int comparePaths(@NotNull List<String> p1, @NotNull List<String> p2) {
+    for (int i = 0; i < p1.size(); i++) {
+      String n1 = p1.get(i), n2 = p2.get(i);
+      if (n1.equals(n2)) continue;
+      if ("_id".equals(n1)) return -1;
+      if ("_id".equals(n2)) return 1;
+      return n1.compareTo(n2);
+    }
+    return 0;
+  }
+
+  private static int getJavaType(@NotNull String type) {
+    return switch (type) {
+      case "int" -> Types.INTEGER;
+      case "date" -> Types.DATE;
+      case "double" -> Types.DOUBLE;
+      case "array" -> MetaJson.TYPE_ARRAY;
+      default -> Types.VARCHAR;
+    };
+  }
+
+  private static final class PathStats {
+    private final Map<String, Long> types = new LinkedHashMap<>();
+    private long count;
+    private long objects;
+
+    /**
+     * @return the most frequent type, null only if there is no other type
+     */
+    @NotNull
+    private String getScalarType() {
+      String best = "null";
+      long bestCount = 0;
+      for (Map.Entry<String, Long> e : types.entrySet()) {
+        if (!e.getKey().equals("null") && e.getValue() > bestCount) {
+          best = e.getKey();
+          bestCount = e.getValue();
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.dbschema.mongo;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CancellationTest {
+
+  @Test
+  public void testCancelRunsCurrentAction() {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger calls = new AtomicInteger();
+    cancellation.onCancel(calls::incrementAndGet);
+    cancellation.cancel();
+    assertTrue(cancellation.isCancelled());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testActionRegisteredAfterCancel() {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger calls = new AtomicInteger();
+    cancellation.cancel();
+    cancellation.onCancel(calls::incrementAndGet);
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testReset() {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger calls = new AtomicInteger();
+    cancellation.onCancel(calls::incrementAndGet);
+    cancellation.reset();
+    assertFalse(cancellation.isCancelled());
+    cancellation.cancel();
+    assertEquals(0, calls.get());
+    assertTrue(cancellation.getComment().startsWith("jdbc-statement-"));
+  }
+}
@@ -0,0 +1,39 @@
+package com.dbschema.mongo;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CollectionStatisticsTest {
+
+  @Test
+  public void testShardsAreSummed() {
+    List<Document> documents = List.of(
+      collStats(10, 4096, new Document("_id_", 1000).append("name_1", 2000)),
+      collStats(5, 8192, new Document("_id_", 500).append("name_1", 1000L)),
+      indexStats("_id_", 3),
+      indexStats("name_1", 7),
+      indexStats("name_1", 1),
+      indexStats("building", 2));
+    CollectionStatistics statistics = CollectionStatistics.of(documents);
+    assertEquals(15, statistics.documentCount());
+    assertEquals(12288, statistics.storageSize());
+    assertEquals(new CollectionStatistics.IndexStatistics(1500, 3), statistics.getIndex("_id_"));
+    assertEquals(new CollectionStatistics.IndexStatistics(3000, 8), statistics.getIndex("name_1"));
+    assertEquals(new CollectionStatistics.IndexStatistics(0, 2), statistics.getIndex("building"));
+    assertEquals(CollectionStatistics.IndexStatistics.EMPTY, statistics.getIndex("missing"));
+  }
+
+  private static Document collStats(int count, int storageSize, Document indexSizes) {
+    return new Document("ns", "db.users").append("storageStats", new Document("count", count)
+      .append("storageSize", storageSize)
+      .append("indexSizes", indexSizes));
+  }
+
+  private static Document indexStats(String name, long ops) {
+    return new Document("name", name).append("accesses", new Document("ops", ops));
+  }
+}
@@ -0,0 +1,76 @@
+package com.dbschema.mongo;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DatabaseNameCacheTest {
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger listed = new AtomicInteger();
+  private final AtomicReference<List<String>> databases = new AtomicReference<>(List.of("admin", "shop"));
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  private DatabaseNameCache cache(long ttlMillis) {
+    return new DatabaseNameCache(ttlMillis, () -> {
+      listed.incrementAndGet();
+      if (failure.get() != null) throw failure.get();
+      return databases.get();
+    }, () -> "url", now::get);
+  }
+
+  @Test
+  public void testTtl() throws SQLAlreadyClosedException {
+    DatabaseNameCache cache = cache(5_000);
+    assertEquals(List.of("admin", "shop"), cache.get());
+    databases.set(List.of("admin", "shop", "new"));
+    now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+    assertEquals(List.of("admin", "shop"), cache.get());
+    assertEquals(1, listed.get());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertEquals(List.of("admin", "shop", "new"), cache.get());
+    assertEquals(2, listed.get());
+
+    databases.set(List.of("admin"));
+    cache.invalidate();
+    assertEquals(List.of("admin"), cache.get());
+    assertEquals(3, listed.get());
+  }
+
+  @Test
+  public void testNoCaching() throws SQLAlreadyClosedException {
+    DatabaseNameCache cache = cache(0);
+    cache.get();
+    cache.get();
+    assertEquals(2, listed.get());
+  }
+
+  @Test
+  public void testFallbackToUrlDatabase() throws SQLAlreadyClosedException {
+    DatabaseNameCache cache = cache(5_000);
+    failure.set(new IllegalStateException("not authorized"));
+    assertEquals(List.of("url"), cache.get());
+    // the fallback is cached too
+    assertEquals(List.of("url"), cache.get());
+    assertEquals(1, listed.get());
+
+    failure.set(null);
+    databases.set(List.of());
+    cache.invalidate();
+    assertEquals(List.of("url"), cache.get());
+  }
+
+  @Test
+  public void testClosed() {
+    DatabaseNameCache cache = new DatabaseNameCache(5_000, () -> {
+      throw new SQLAlreadyClosedException("MongoClientWrapper");
+    }, () -> "url", now::get);
+    assertThrows(SQLAlreadyClosedException.class, cache::get);
+  }
+}
@@ -0,0 +1,78 @@
+package com.dbschema.mongo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DiscoveryIteratorTest {
+  private static final Executor EXECUTOR = runnable -> Thread.ofVirtual().start(runnable);
+
+  @Test
+  public void testOrderAndConcurrency() {
+    AtomicInteger active = new AtomicInteger(), maxActive = new AtomicInteger();
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      int value = i;
+      tasks.add(() -> {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        // earlier tasks finish later
+        Thread.sleep(10 - value);
+        active.decrementAndGet();
+        return value;
+      });
+    }
+    List<Integer> results = new ArrayList<>();
+    new DiscoveryIterator<>(tasks.iterator(), 3, EXECUTOR).forEachRemaining(results::add);
+    assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), results);
+    assertTrue(maxActive.get() <= 3);
+  }
+
+  @Test
+  public void testFailuresAreSkipped() {
+    List<Callable<String>> tasks = List.of(() -> "a",
+                                           () -> { throw new IllegalStateException("cannot sample"); },
+                                           () -> null,
+                                           () -> "d");
+    List<String> results = new ArrayList<>();
+    new DiscoveryIterator<>(tasks.iterator(), 2, EXECUTOR).forEachRemaining(results::add);
+    assertEquals(List.of("a", "d"), results);
+  }
+
+  @Test
+  public void testClose() throws InterruptedException {
+    AtomicInteger started = new AtomicInteger();
+    CountDownLatch running = new CountDownLatch(2);
+    CountDownLatch interrupted = new CountDownLatch(2);
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    tasks.add(() -> 0);
+    for (int i = 1; i < 10; i++) {
+      tasks.add(() -> {
+        started.incrementAndGet();
+        running.countDown();
+        try {
+          Thread.sleep(60_000);
+          return 1;
+        }
+        catch (InterruptedException e) {
+          interrupted.countDown();
+          throw e;
+        }
+      });
+    }
+    DiscoveryIterator<Integer> iterator = new DiscoveryIterator<>(tasks.iterator(), 3, EXECUTOR);
+    assertEquals(0, (int) iterator.next());
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+    iterator.close();
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    assertFalse(iterator.hasNext());
+    assertEquals(2, started.get());
+  }
+}
@@ -1,7 +1,12 @@
 package com.dbschema.mongo;
 
+import com.mongodb.client.model.Filters;
+import org.bson.BsonRegularExpression;
+import org.bson.conversions.Bson;
 import org.junit.Test;
 
+import java.util.regex.Pattern;
+
 import static org.junit.Assert.*;
 
 public class MongoNamePatternTest {
@@ -128,4 +133,22 @@ public class MongoNamePatternTest {
     }
     assertNotNull(exception);
   }
+
+  @Test
+  public void testToFilter() {
+    assertNull(MongoNamePattern.create(null).toFilter("name"));
+    assertNull(MongoNamePattern.create("%").toFilter("name"));
+    assertEquals(Filters.eq("name", "users_1"), MongoNamePattern.create("users\\_1").toFilter("name"));
+
+    Bson filter = MongoNamePattern.create("tenant_.users%").toFilter("name");
+    assertNotNull(filter);
+    BsonRegularExpression regex = filter.toBsonDocument().getRegularExpression("name");
+    Pattern serverPattern = Pattern.compile(regex.getPattern());
+    assertTrue(serverPattern.matcher("tenant1.users").find());
+    assertTrue(serverPattern.matcher("tenant2.users_archive").find());
+    assertFalse(serverPattern.matcher("tenant12.users").find());
+    assertFalse(serverPattern.matcher("xtenant1.users").find());
+    assertFalse(serverPattern.matcher("tenant1xusers").find());
+    assertFalse(serverPattern.matcher("tenant1.user").find());
+  }
 }
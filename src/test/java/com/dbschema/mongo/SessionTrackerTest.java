@@ -0,0 +1,40 @@
+package com.dbschema.mongo;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SessionTrackerTest {
+  private static final ConnectionDescription CONNECTION = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+  @Test
+  public void testSessionsOfCurrentThread() throws InterruptedException {
+    SessionTracker tracker = new SessionTracker();
+    tracker.commandStarted(find("{id: 0}"));
+
+    Set<BsonDocument> sessions = tracker.start();
+    tracker.commandStarted(find("{id: 1}"));
+    tracker.commandStarted(find("{id: 1}"));
+    tracker.commandStarted(find(null));
+    Thread other = Thread.ofVirtual().start(() -> tracker.commandStarted(find("{id: 2}")));
+    other.join();
+    tracker.stop();
+    tracker.commandStarted(find("{id: 3}"));
+
+    assertEquals(Set.of(BsonDocument.parse("{id: 1}")), sessions);
+  }
+
+  private static CommandStartedEvent find(String lsid) {
+    BsonDocument command = BsonDocument.parse("{find: 'c'}");
+    if (lsid != null) command.append("lsid", BsonDocument.parse(lsid));
+    return new CommandStartedEvent(null, 1, 1, CONNECTION, "db", "find", command);
+  }
+}
@@ -0,0 +1,86 @@
+package com.dbschema.mongo;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class WriteBatchTest {
+  // no server is needed, writes are only prepared
+  private final MongoClient client = MongoClients.create("mongodb://localhost:27017");
+  private final WriteBatch batch = new WriteBatch(client.getDatabase("db").getCollection("col"));
+
+  @After
+  public void tearDown() {
+    client.close();
+  }
+
+  @Test
+  public void testSplitByCount() {
+    for (int i = 0; i < 5; i++) {
+      batch.addUpsert(new Document("v", i));
+    }
+    MongoService.WriteLimits limits = new MongoService.WriteLimits(2, 16 * 1024 * 1024);
+    assertEquals(2, batch.chunkEnd(0, limits));
+    assertEquals(4, batch.chunkEnd(2, limits));
+    assertEquals(5, batch.chunkEnd(4, limits));
+  }
+
+  @Test
+  public void testSplitBySize() {
+    for (int i = 0; i < 5; i++) {
+      batch.addUpsert(new Document("s", "x".repeat(100)));
+    }
+    // each document takes a bit more than 100 bytes
+    MongoService.WriteLimits limits = new MongoService.WriteLimits(1000, 250);
+    assertEquals(2, batch.chunkEnd(0, limits));
+    assertEquals(4, batch.chunkEnd(2, limits));
+    assertEquals(5, batch.chunkEnd(4, limits));
+  }
+
+  @Test
+  public void testOversizedDocument() {
+    batch.addUpsert(new Document("s", "x"));
+    batch.addUpsert(new Document("s", "x".repeat(1000)));
+    batch.addUpsert(new Document("s", "x"));
+    MongoService.WriteLimits limits = new MongoService.WriteLimits(1000, 500);
+    assertEquals(1, batch.chunkEnd(0, limits));
+    // sent on its own, the server rejects it
+    assertEquals(2, batch.chunkEnd(1, limits));
+    assertEquals(3, batch.chunkEnd(2, limits));
+  }
+
+  @Test
+  public void testCounts() {
+    batch.addUpsert(new Document("v", 1));
+    batch.addUpsert(new Document("_id", 2).append("v", 2));
+    batch.addDelete(new Document("_id", 3));
+    batch.addDelete(new Document("_id", 4));
+    batch.addUpsert(new Document("v", 5));
+    int[] counts = new int[5];
+
+    batch.fillCounts(counts, 0, 5, BulkWriteResult.acknowledged(2, 0, 2, 0, List.of(), List.of()), Set.of());
+    assertArrayEquals(new int[]{1, 1, 1, 1, 1}, counts);
+
+    // one of the deleted documents didn't exist, it isn't known which one
+    batch.fillCounts(counts, 0, 5, BulkWriteResult.acknowledged(2, 0, 1, 0, List.of(), List.of()), Set.of());
+    assertArrayEquals(new int[]{1, 1, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, 1}, counts);
+
+    // partial failure of the second chunk, indexes of failed writes are relative to the chunk
+    counts = new int[5];
+    batch.fillCounts(counts, 2, 5, BulkWriteResult.acknowledged(0, 0, 1, 0, List.of(), List.of()), Set.of(0, 2));
+    assertArrayEquals(new int[]{0, 0, Statement.EXECUTE_FAILED, 1, Statement.EXECUTE_FAILED}, counts);
+
+    batch.fillCounts(counts, 0, 5, BulkWriteResult.unacknowledged(), Set.of());
+    assertArrayEquals(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO,
+                                Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}, counts);
+  }
+}
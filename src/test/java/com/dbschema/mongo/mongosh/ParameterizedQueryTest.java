@@ -0,0 +1,69 @@
+package com.dbschema.mongo.mongosh;
+
+import com.dbschema.mongo.nativeQuery.NativeQuery;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParameterizedQueryTest {
+
+  @Test
+  public void testPlaceholders() {
+    assertEquals(2, ParameterizedQuery.parse("db.col.find({a: ?, b: {$gt: ?}})").getParameterCount());
+    assertEquals(0, ParameterizedQuery.parse("db.col.find({a: '?', b: \"?\", c: /a?b/})").getParameterCount());
+    assertEquals(0, ParameterizedQuery.parse("db.col.find() // why?\n/* really? */").getParameterCount());
+    assertEquals(0, ParameterizedQuery.parse("x?.y ?? z").getParameterCount());
+    assertEquals(1, ParameterizedQuery.parse("db.col.find({a: 4 / 2, b: ?})").getParameterCount());
+    assertEquals(1, ParameterizedQuery.parse("db.col.find({a: ?, b: x ? 1 : 2})").getParameterCount());
+    assertEquals(2, ParameterizedQuery.parse("db.col.find({a: f(x) ? ? : 2, b: [x]?1:?})").getParameterCount());
+    assertEquals(1, ParameterizedQuery.parse("db.col.find().map(d => { return ? })").getParameterCount());
+    assertEquals(0, ParameterizedQuery.parse("db.col.find().map(d => d.return ? 1 : 2)").getParameterCount());
+  }
+
+  @Test
+  public void testRender() throws SQLException {
+    ParameterizedQuery query = ParameterizedQuery.parse("db.col.find({a: ?, b: ?, c: ?}).forEach(printjson)");
+    String script = query.render(Arrays.asList("it's \"quoted\"", 5L, null));
+    assertEquals("db.col.find({a: \"it's \\\"quoted\\\"\", b: NumberLong(5), c: null}).forEach(printjson)", script);
+  }
+
+  @Test
+  public void testShellLiterals() {
+    assertEquals("ObjectId(\"5f1d7a3b9c1e4a2b3c4d5e6f\")", ParameterizedQuery.toShellLiteral(new ObjectId("5f1d7a3b9c1e4a2b3c4d5e6f")));
+    assertEquals("ISODate(\"1970-01-01T00:00:00.000Z\")", ParameterizedQuery.toShellLiteral(new Date(0)));
+    assertEquals("{\"x\": 1}", ParameterizedQuery.toShellLiteral(new Document("x", 1)));
+  }
+
+  @Test
+  public void testBindNative() throws SQLException {
+    ParameterizedQuery query = ParameterizedQuery.parse("db.col.find({a: ?, b: {$in: [?, 2]}})");
+    NativeQuery first = query.bindNativeQuery(Arrays.asList("x", 1));
+    NativeQuery second = query.bindNativeQuery(Arrays.asList("y", 3));
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNotSame(first, second);
+    // the template keeps its placeholders, bound queries don't share documents
+    assertEquals(Document.parse("{a: 'x', b: {$in: [1, 2]}}"), first.getFilter());
+    assertEquals(Document.parse("{a: 'y', b: {$in: [3, 2]}}"), second.getFilter());
+  }
+
+  @Test
+  public void testBindWholeFilter() throws SQLException {
+    ParameterizedQuery query = ParameterizedQuery.parse("db.col.find(?)");
+    assertNotNull(query.bindNativeQuery(List.of(new Document("a", 1))));
+    assertNull(query.bindNativeQuery(List.of("not a document")));
+  }
+
+  @Test(expected = SQLException.class)
+  public void testMissingParameter() throws SQLException {
+    ParameterizedQuery.parse("db.col.find({a: ?})").render(Collections.emptyList());
+  }
+}
@@ -0,0 +1,157 @@
+package com.dbschema.mongo.mongosh;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class ShellPoolTest {
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testBorrowAndRelease() throws Exception {
+    TestFactory factory = new TestFactory();
+    ShellPool<TestShell> pool = new ShellPool<>(executor, factory, 2, 4, 0);
+    waitFor(() -> pool.getIdleCount() == 2);
+
+    TestShell shell = pool.borrow();
+    assertEquals(1, pool.getHitCount());
+    assertEquals(0, pool.getMissCount());
+    waitFor(() -> pool.getIdleCount() == 2);
+    assertEquals(3, factory.created.get());
+
+    pool.release(shell);
+    // a released shell is bound to its connection, it is closed instead of being reused
+    assertTrue(shell.closed);
+    assertEquals(2, pool.getIdleCount());
+
+    pool.close();
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(3, factory.closed.get());
+    assertThrows(SQLException.class, pool::borrow);
+  }
+
+  @Test
+  public void testWaitForWarmUp() throws Exception {
+    TestFactory factory = new TestFactory();
+    factory.blocked = new CountDownLatch(1);
+    ShellPool<TestShell> pool = new ShellPool<>(executor, factory, 0, 1, 0);
+
+    AtomicReference<TestShell> borrowed = new AtomicReference<>();
+    Thread[] borrowers = new Thread[3];
+    for (int i = 0; i < borrowers.length; i++) {
+      borrowers[i] = Thread.ofVirtual().start(() -> {
+        try {
+          TestShell shell = pool.borrow();
+          borrowed.set(shell);
+          pool.release(shell);
+        }
+        catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+      });
+    }
+    waitFor(() -> pool.getMissCount() == 3);
+    // no more than maxSize shells are warmed up for waiting borrowers
+    assertEquals(1, factory.started.get());
+
+    factory.blocked.countDown();
+    for (Thread borrower : borrowers) {
+      borrower.join(10_000);
+      assertFalse(borrower.isAlive());
+    }
+    assertNotNull(borrowed.get());
+    assertEquals(0, pool.getHitCount());
+    assertEquals(3, factory.created.get());
+    assertTrue(pool.getWaitTime(TimeUnit.NANOSECONDS) > 0);
+    pool.close();
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    AtomicLong now = new AtomicLong();
+    TestFactory factory = new TestFactory();
+    factory.blocked = new CountDownLatch(1);
+    ShellPool<TestShell> pool = new ShellPool<>(executor, factory, 0, 2, 60_000, now::get);
+
+    // the borrower gives up, the shell warmed up for it stays idle above minIdle
+    Thread borrower = Thread.ofVirtual().start(() -> assertThrows(SQLException.class, pool::borrow));
+    waitFor(() -> factory.started.get() == 1);
+    borrower.interrupt();
+    borrower.join(10_000);
+    factory.blocked.countDown();
+    waitFor(() -> pool.getIdleCount() == 1);
+
+    now.addAndGet(30_000);
+    pool.evictIdle();
+    assertEquals(1, pool.getIdleCount());
+    now.addAndGet(31_000);
+    pool.evictIdle();
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(1, pool.getEvictedCount());
+    assertEquals(1, factory.closed.get());
+    pool.close();
+  }
+
+  @Test
+  public void testWarmUpFailure() {
+    TestFactory factory = new TestFactory();
+    factory.failure = new IllegalStateException("no engine");
+    ShellPool<TestShell> pool = new ShellPool<>(executor, factory, 0, 1, 0);
+    SQLException e = assertThrows(SQLException.class, pool::borrow);
+    assertSame(factory.failure, e.getCause());
+    pool.close();
+  }
+
+  private static void waitFor(@NotNull BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) fail("Condition was not met in time");
+      Thread.sleep(5);
+    }
+  }
+
+  private static final class TestShell {
+    private volatile boolean closed;
+  }
+
+  private static final class TestFactory implements ShellPool.ShellFactory<TestShell> {
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private volatile CountDownLatch blocked;
+    private volatile RuntimeException failure;
+
+    @Override
+    @NotNull
+    public TestShell create() throws Exception {
+      started.incrementAndGet();
+      if (blocked != null) blocked.await();
+      if (failure != null) throw failure;
+      created.incrementAndGet();
+      return new TestShell();
+    }
+
+    @Override
+    public void close(@NotNull TestShell shell) {
+      shell.closed = true;
+      closed.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.dbschema.mongo.mongosh;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    StatementCache<String> cache = new StatementCache<>(10);
+    AtomicInteger analyzed = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      assertEquals("DB.COL.FIND()", cache.get("db.col.find()", s -> {
+        analyzed.incrementAndGet();
+        return s.toUpperCase();
+      }));
+    }
+    assertEquals(1, analyzed.get());
+    assertEquals(4, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.8, cache.getHitRatio(), 0.0001);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    StatementCache<String> cache = new StatementCache<>(2);
+    cache.get("a", s -> s);
+    cache.get("b", s -> s);
+    cache.get("a", s -> s);
+    cache.get("c", s -> s);
+    assertEquals(2, cache.size());
+    cache.get("a", s -> s);
+    assertEquals(2, cache.getHitCount());
+    cache.get("b", s -> s);
+    assertEquals(4, cache.getMissCount());
+  }
+
+  @Test
+  public void testDisabled() {
+    StatementCache<String> cache = new StatementCache<>(0);
+    cache.get("a", s -> s);
+    cache.get("a", s -> s);
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getMissCount());
+  }
+}
@@ -0,0 +1,125 @@
+package com.dbschema.mongo.mongosh;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class UsageTrackingHolderTest {
+  private static final long IDLE_TIMEOUT = 60_000;
+  private final AtomicLong now = new AtomicLong();
+  private final List<TestShell> disposed = new ArrayList<>();
+  private final TestHolder holder = new TestHolder();
+  private final IdleShellReleaser releaser = new IdleShellReleaser();
+  private final AtomicReference<String> currentDatabase = new AtomicReference<>("a");
+
+  @After
+  public void tearDown() {
+    releaser.close();
+  }
+
+  @Test
+  public void testNotReleasedWhileEvaluating() throws Exception {
+    TestShell shell = get();
+    elapse(IDLE_TIMEOUT * 2);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertTrue(holder.hasShell());
+
+    holder.returnShell(shell);
+    elapse(IDLE_TIMEOUT - 1);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertTrue(holder.hasShell());
+    elapse(1);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertFalse(holder.hasShell());
+    assertEquals(List.of(shell), disposed);
+    assertEquals(1, releaser.getReleasedShellCount());
+  }
+
+  @Test
+  public void testNotReleasedWhileCursorIsOpen() throws Exception {
+    // the statement returns the shell, the result set backed by a shell cursor still uses it
+    TestShell shell = get();
+    get();
+    holder.returnShell(shell);
+    elapse(IDLE_TIMEOUT * 2);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertTrue(holder.hasShell());
+
+    // the result set is closed
+    holder.returnShell(shell);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertTrue(holder.hasShell());
+    elapse(IDLE_TIMEOUT);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertFalse(holder.hasShell());
+  }
+
+  @Test
+  public void testRecreatedOnNextUse() throws Exception {
+    TestShell first = get();
+    assertEquals("a", first.database);
+    holder.returnShell(first);
+    currentDatabase.set("b");
+    assertSame(first, get());
+    holder.returnShell(first);
+
+    elapse(IDLE_TIMEOUT);
+    releaser.check(holder, IDLE_TIMEOUT);
+    TestShell second = get();
+    assertNotSame(first, second);
+    // the new shell is switched to the database the connection uses now
+    assertEquals("b", second.database);
+    assertEquals(List.of(first), disposed);
+  }
+
+  @Test
+  public void testReturnOfRecreatedShell() throws Exception {
+    TestShell first = get();
+    holder.recreateShell();
+    TestShell second = get();
+    // returning the old shell doesn't count as a return of the new one
+    holder.returnShell(first);
+    elapse(IDLE_TIMEOUT);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertTrue(holder.hasShell());
+    holder.returnShell(second);
+    elapse(IDLE_TIMEOUT);
+    releaser.check(holder, IDLE_TIMEOUT);
+    assertFalse(holder.hasShell());
+    assertEquals(List.of(first, second), disposed);
+  }
+
+  private TestShell get() throws Exception {
+    return holder.getShell(() -> new TestShell(currentDatabase.get()));
+  }
+
+  private void elapse(long millis) {
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private final class TestHolder extends UsageTrackingHolder<TestShell> {
+    TestHolder() {
+      super(now::get);
+    }
+
+    @Override
+    protected void disposeShell(TestShell shell) {
+      disposed.add(shell);
+    }
+  }
+
+  private static final class TestShell {
+    private final String database;
+
+    TestShell(String database) {
+      this.database = database;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.dbschema.mongo.nativeQuery;
+
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NativeQueryParserTest {
+
+  @Test
+  public void testFind() {
+    NativeQuery query = NativeQueryParser.parse("db.col.find()");
+    assertNotNull(query);
+    assertEquals("col", query.collection);
+    assertEquals(NativeQuery.Method.FIND, query.method);
+    assertNull(query.filter);
+  }
+
+  @Test
+  public void testFindWithChain() {
+    NativeQuery query = NativeQueryParser.parse("db.col.find({a: 1, b: {$gt: 'x'}}, {_id: 0}).sort({a: -1}).skip(10).limit(5);");
+    assertNotNull(query);
+    assertEquals(Document.parse("{a: 1, b: {$gt: 'x'}}"), query.filter);
+    assertEquals(new Document("_id", 0), query.projection);
+    assertEquals(new Document("a", -1), query.sort);
+    assertEquals(Integer.valueOf(10), query.skip);
+    assertEquals(Integer.valueOf(5), query.limit);
+  }
+
+  @Test
+  public void testMultilineChain() {
+    NativeQuery query = NativeQueryParser.parse("db.col.find({})\n  .limit(2)\n");
+    assertNotNull(query);
+    assertEquals(Integer.valueOf(2), query.limit);
+  }
+
+  @Test
+  public void testGetCollection() {
+    NativeQuery query = NativeQueryParser.parse("db.getCollection('hello.my_collection').findOne({_id: ObjectId('5f1d7a3b9c1e4a2b3c4d5e6f')})");
+    assertNotNull(query);
+    assertEquals("hello.my_collection", query.collection);
+    assertEquals(NativeQuery.Method.FIND_ONE, query.method);
+    assertEquals(new ObjectId("5f1d7a3b9c1e4a2b3c4d5e6f"), query.filter.get("_id"));
+  }
+
+  @Test
+  public void testDottedCollection() {
+    NativeQuery query = NativeQueryParser.parse("db.hello.world.countDocuments({v: 1})");
+    assertNotNull(query);
+    assertEquals("hello.world", query.collection);
+    assertEquals(NativeQuery.Method.COUNT_DOCUMENTS, query.method);
+  }
+
+  @Test
+  public void testCountWithoutFilter() {
+    NativeQuery query = NativeQueryParser.parse("db.col.count()");
+    assertNotNull(query);
+    assertEquals(NativeQuery.Method.ESTIMATED_DOCUMENT_COUNT, query.method);
+  }
+
+  @Test
+  public void testRegex() {
+    NativeQuery query = NativeQueryParser.parse("db.col.find({category: /cat(1|2)./i})");
+    assertNotNull(query);
+    assertEquals(new BsonRegularExpression("cat(1|2).", "i"), query.filter.get("category"));
+  }
+
+  @Test
+  public void testAggregate() {
+    NativeQuery query = NativeQueryParser.parse("db.col.aggregate([{$group: {_id: '$name', total: {$sum: '$v'}}}], {allowDiskUse: true})");
+    assertNotNull(query);
+    assertEquals(1, query.pipeline.size());
+    assertEquals(Boolean.TRUE, query.allowDiskUse);
+  }
+
+  @Test
+  public void testAggregateVarargs() {
+    NativeQuery query = NativeQueryParser.parse("db.col.aggregate({$match: {v: 1}}, {$limit: 1})");
+    assertNotNull(query);
+    assertEquals(2, query.pipeline.size());
+  }
+
+  @Test
+  public void testDistinct() {
+    NativeQuery query = NativeQueryParser.parse("db.col.distinct(\"v\", {v: {$ne: null}})");
+    assertNotNull(query);
+    assertEquals("v", query.distinctField);
+  }
+
+  @Test
+  public void testFallback() {
+    assertNull(NativeQueryParser.parse("db.col.find({a: 1 + 1})"));
+    assertNull(NativeQueryParser.parse("db.col.find({a: x})"));
+    assertNull(NativeQueryParser.parse("db.col.find().map(d => d._id)"));
+    assertNull(NativeQueryParser.parse("db.col.find().limit(1).toArray()"));
+    assertNull(NativeQueryParser.parse("db.col.insertOne({a: 1})"));
+    assertNull(NativeQueryParser.parse("db.col.count({}, {limit: 1})"));
+    assertNull(NativeQueryParser.parse("db.col.aggregate([], {collation: {locale: 'fr'}})"));
+    assertNull(NativeQueryParser.parse("db.col.find({a: `${x}`})"));
+    assertNull(NativeQueryParser.parse("db.getCollectionNames()"));
+    assertNull(NativeQueryParser.parse("db.col.find(); db.col.drop()"));
+    assertNull(NativeQueryParser.parse("use test"));
+  }
+}
@@ -0,0 +1,69 @@
+package com.dbschema.mongo.nativeQuery;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NativeQueryTest {
+
+  @Test
+  public void testLimit() {
+    NativeQuery query = NativeQueryParser.parse("db.col.find()");
+    assertNotNull(query);
+    assertNull(query.limit(0));
+    assertEquals(Integer.valueOf(10), query.limit(10));
+
+    query = NativeQueryParser.parse("db.col.find().limit(5)");
+    assertNotNull(query);
+    assertEquals(Integer.valueOf(5), query.limit(0));
+    assertEquals(Integer.valueOf(5), query.limit(10));
+    assertEquals(Integer.valueOf(3), query.limit(3));
+  }
+
+  @Test
+  public void testZeroLimit() {
+    // limit(0) means no limit
+    NativeQuery query = NativeQueryParser.parse("db.col.find().limit(0)");
+    assertNotNull(query);
+    assertEquals(Integer.valueOf(0), query.limit(0));
+    assertEquals(Integer.valueOf(10), query.limit(10));
+  }
+
+  @Test
+  public void testNegativeLimit() {
+    // a negative limit returns a single batch, the sign is kept
+    NativeQuery query = NativeQueryParser.parse("db.col.find().limit(-5)");
+    assertNotNull(query);
+    assertEquals(Integer.valueOf(-5), query.limit(0));
+    assertEquals(Integer.valueOf(-5), query.limit(10));
+    assertEquals(Integer.valueOf(-3), query.limit(3));
+  }
+
+  @Test
+  public void testLimitPipeline() {
+    NativeQuery query = NativeQueryParser.parse("db.col.aggregate([{$match: {v: 1}}])");
+    assertNotNull(query);
+    assertEquals(List.of(Document.parse("{$match: {v: 1}}")), query.limitPipeline(0));
+    assertEquals(List.of(Document.parse("{$match: {v: 1}}"), new Document("$limit", 10)), query.limitPipeline(10));
+    // the pipeline of the query is not changed
+    assertEquals(1, query.pipeline.size());
+
+    query = NativeQueryParser.parse("db.col.aggregate([])");
+    assertNotNull(query);
+    assertEquals(List.of(new Document("$limit", 10)), query.limitPipeline(10));
+  }
+
+  @Test
+  public void testOutputPipeline() {
+    NativeQuery out = NativeQueryParser.parse("db.col.aggregate([{$match: {v: 1}}, {$out: 'other'}])");
+    assertNotNull(out);
+    assertEquals(2, out.limitPipeline(10).size());
+
+    NativeQuery merge = NativeQueryParser.parse("db.col.aggregate([{$merge: {into: 'other'}}])");
+    assertNotNull(merge);
+    assertEquals(List.of(Document.parse("{$merge: {into: 'other'}}")), merge.limitPipeline(10));
+  }
+}
@@ -0,0 +1,76 @@
+package com.dbschema.mongo.resultSet;
+
+import com.dbschema.mongo.schema.MetaJson;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlattenedResultSetIteratorTest {
+
+  @Test
+  public void testColumns() throws SQLException {
+    DocumentColumns columns = DocumentColumns.of(createMeta());
+    assertNotNull(columns);
+    FlattenedResultSetIterator rs = new FlattenedResultSetIterator(List.of().iterator(), columns, "people");
+    ResultSetMetaData metaData = rs.getMetaData();
+    assertEquals(5, metaData.getColumnCount());
+    assertEquals("name", metaData.getColumnLabel(1));
+    assertEquals("address.city", metaData.getColumnLabel(2));
+    assertEquals("address.geo.zip", metaData.getColumnLabel(3));
+    assertEquals(Types.INTEGER, metaData.getColumnType(3));
+    assertEquals(Types.ARRAY, metaData.getColumnType(4));
+    assertEquals(Types.JAVA_OBJECT, metaData.getColumnType(5));
+    assertEquals("people", metaData.getTableName(1));
+  }
+
+  @Test
+  public void testValues() throws SQLException {
+    DocumentColumns columns = DocumentColumns.of(createMeta());
+    assertNotNull(columns);
+    List<Document> documents = List.of(
+        Document.parse("{name: 'a', address: {city: 'Paris', geo: {zip: 75001}}, tags: [1, 2], extra: 1}"),
+        Document.parse("{name: 'b', address: 'unknown'}"));
+    FlattenedResultSetIterator rs = new FlattenedResultSetIterator(documents.iterator(), columns, "people");
+
+    assertTrue(rs.next());
+    assertEquals("a", rs.getString("name"));
+    assertEquals("Paris", rs.getString("Address.City"));
+    assertEquals(75001, rs.getInt("address.geo.zip"));
+    assertEquals(List.of(1, 2), rs.getObject(4));
+    assertNull(rs.getObject("orders"));
+    assertTrue(rs.wasNull());
+
+    assertTrue(rs.next());
+    assertEquals("b", rs.getString(1));
+    assertFalse(rs.wasNull());
+    assertNull(rs.getString(2));
+    assertTrue(rs.wasNull());
+    assertNull(rs.getObject(3));
+
+    assertFalse(rs.next());
+    assertThrows(SQLException.class, () -> rs.findColumn("extra"));
+    assertThrows(SQLException.class, () -> rs.getObject(6));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(DocumentColumns.of(new MetaJson(null, "people", MetaJson.TYPE_MAP)));
+  }
+
+  private static MetaJson createMeta() {
+    MetaJson meta = new MetaJson(null, "people", MetaJson.TYPE_MAP);
+    meta.createField("name", "String", Types.VARCHAR, true);
+    MetaJson address = meta.createJsonMapField("address", true);
+    address.createField("city", "String", Types.VARCHAR, true);
+    address.createJsonMapField("geo", true).createField("zip", "Integer", Types.INTEGER, true);
+    meta.createField("tags", "array", MetaJson.TYPE_ARRAY, true);
+    meta.createJsonListField("orders", false).createField("total", "Double", Types.DOUBLE, true);
+    return meta;
+  }
+}
@@ -0,0 +1,177 @@
+package com.dbschema.mongo.resultSet;
+
+import com.dbschema.mongo.Util;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ListResultSetTest {
+
+  @Test
+  public void testLabels() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("TABLE_NAME", "COLUMN_NAME", "DATA_TYPE");
+    rs.addRow(new Object[]{"users", "name", "12"});
+    rs.addRow(new Object[]{"users", null, "4"});
+    assertEquals(2, rs.findColumn("COLUMN_NAME"));
+    assertEquals(2, rs.findColumn("column_name"));
+    assertThrows(SQLException.class, () -> rs.findColumn("REMARKS"));
+
+    assertTrue(rs.next());
+    assertEquals("name", rs.getString("COLUMN_NAME"));
+    assertEquals(12, rs.getInt("data_type"));
+    assertEquals("users", rs.getObject("Table_Name"));
+    assertTrue(rs.next());
+    assertNull(rs.getString("COLUMN_NAME"));
+    assertTrue(rs.wasNull());
+    assertEquals(4, rs.getInt(3));
+    assertFalse(rs.wasNull());
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testRowsOfDifferentLength() throws SQLException {
+    List<Object[]> rows = List.of(new Object[]{1}, new Object[]{2, 3}, new Object[0]);
+    ListResultSet rs = new ListResultSet(rows, new String[]{"a", "b"});
+    assertTrue(rs.next());
+    assertEquals(1, rs.getObject(1));
+    assertThrows(SQLException.class, () -> rs.getObject(2));
+    assertTrue(rs.next());
+    assertEquals(3, rs.getLong("b"));
+    assertTrue(rs.next());
+    assertThrows(SQLException.class, () -> rs.getObject(1));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testManyRows() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("i", "s");
+    for (int i = 0; i < 1000; i++) {
+      rs.addRow(new Object[]{i, Integer.toString(i)});
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(rs.next());
+      assertEquals(i, rs.getInt("i"));
+      assertEquals(i, rs.getInt("s"));
+    }
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testIntColumns() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("COLUMN_NAME", "DATA_TYPE", "NULLABLE");
+    rs.setColumnType("DATA_TYPE", Types.INTEGER);
+    rs.addRow(new Object[]{"a", 12, "1"});
+    rs.addRow(new Object[]{"b", null, 0});
+    assertEquals(Types.INTEGER, rs.getMetaData().getColumnType(2));
+    assertEquals(Types.OTHER, rs.getMetaData().getColumnType(3));
+
+    assertTrue(rs.next());
+    assertEquals(12, rs.getInt("DATA_TYPE"));
+    assertEquals(12, rs.getObject(2));
+    assertEquals("12", rs.getString(2));
+    assertEquals(1, rs.getInt("NULLABLE"));
+    assertTrue(rs.next());
+    assertEquals(0, rs.getInt("DATA_TYPE"));
+    assertTrue(rs.wasNull());
+    assertEquals(0, rs.getInt("NULLABLE"));
+    assertFalse(rs.wasNull());
+    assertThrows(IllegalStateException.class, () -> rs.setColumnType("NULLABLE", Types.INTEGER));
+  }
+
+  @Test
+  public void testValuesOutOfRange() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("NAME", "SIZE");
+    rs.setColumnType("SIZE", Types.INTEGER);
+    assertThrows(IllegalArgumentException.class, () -> rs.addRow(new Object[]{"a", 1L << 40}));
+    assertThrows(IllegalArgumentException.class, () -> rs.addRow(new Object[]{"a", "large"}));
+    rs.addRow(new Object[]{1L << 40, 300});
+
+    assertTrue(rs.next());
+    assertThrows(SQLException.class, () -> rs.getInt(1));
+    assertEquals(1L << 40, rs.getLong(1));
+    assertThrows(SQLException.class, () -> rs.getByte(2));
+    assertEquals(300, rs.getShort(2));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testRejectedRowWithNull() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("A", "B");
+    rs.setColumnType("A", Types.INTEGER);
+    rs.setColumnType("B", Types.INTEGER);
+    assertThrows(IllegalArgumentException.class, () -> rs.addRow(new Object[]{null, "x"}));
+    rs.addRow(new Object[]{5, 6});
+
+    assertTrue(rs.next());
+    assertEquals(5, rs.getObject(1));
+    assertEquals(5, rs.getInt(1));
+    assertFalse(rs.wasNull());
+    assertEquals(6, rs.getInt(2));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testSortRows() throws SQLException {
+    ListResultSet rs = new ListResultSet();
+    rs.setColumnNames("TABLE_NAME", "COLUMN_NAME");
+    String[] names = {"b", "_id", "a", "b"};
+    for (int i = 0; i < names.length; i++) {
+      rs.addRow(new Object[]{"t" + i, names[i]});
+    }
+    rs.sortRows("COLUMN_NAME", (o1, o2) -> ((String) o1).compareTo((String) o2));
+    String[] expected = {"t1", "t2", "t0", "t3"};
+    for (String table : expected) {
+      assertTrue(rs.next());
+      assertEquals(table, rs.getString(1));
+    }
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testFetchRows() throws SQLException {
+    int[] fetches = {0};
+    ListResultSet rs = new ListResultSet() {
+      @Override
+      protected boolean fetchRows() {
+        if (fetches[0] == 3) return false;
+        clearRows();
+        // the second batch is empty
+        if (fetches[0] != 1) addRow(new Object[]{fetches[0]});
+        fetches[0]++;
+        return true;
+      }
+    };
+    rs.setColumnNames("batch");
+    assertEquals(0, fetches[0]);
+    assertTrue(rs.next());
+    assertEquals(0, rs.getInt("batch"));
+    assertEquals(1, fetches[0]);
+    assertTrue(rs.next());
+    assertEquals(2, rs.getInt("batch"));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testMaxRows() throws SQLException {
+    ResultSet rs = Util.ok(List.of(1, 2, 3), 2);
+    assertTrue(rs.next());
+    assertEquals(1, rs.getInt("result"));
+    assertTrue(rs.next());
+    assertEquals(2, rs.getInt("result"));
+    assertFalse(rs.next());
+
+    rs = Util.ok(List.of(1, 2, 3), 0);
+    for (int i = 0; i < 3; i++) assertTrue(rs.next());
+    assertFalse(rs.next());
+  }
+}
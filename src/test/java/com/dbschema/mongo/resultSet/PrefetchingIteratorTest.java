@@ -0,0 +1,107 @@
+package com.dbschema.mongo.resultSet;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class PrefetchingIteratorTest {
+
+  @Test
+  public void testOrder() {
+    List<Integer> expected = IntStream.range(0, 1000).boxed().toList();
+    TestCursor<Integer> cursor = new TestCursor<>(expected.iterator());
+    List<Integer> actual = new ArrayList<>();
+    try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(cursor, 16)) {
+      iterator.forEachRemaining(actual::add);
+    }
+    assertEquals(expected, actual);
+    assertTrue(cursor.isClosed);
+  }
+
+  @Test
+  public void testFailure() {
+    Iterator<Integer> failing = new Iterator<>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        if (i == 3) throw new IllegalStateException("broken");
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        return i++;
+      }
+    };
+    PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(new TestCursor<>(failing), 2);
+    assertEquals(Integer.valueOf(0), iterator.next());
+    assertEquals(Integer.valueOf(1), iterator.next());
+    assertEquals(Integer.valueOf(2), iterator.next());
+    assertThrows(IllegalStateException.class, iterator::hasNext);
+    iterator.close();
+  }
+
+  @Test
+  public void testCloseStopsEndlessCursor() {
+    Iterator<Integer> endless = IntStream.iterate(0, i -> i + 1).iterator();
+    TestCursor<Integer> cursor = new TestCursor<>(endless);
+    PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(cursor, 4);
+    assertEquals(Integer.valueOf(0), iterator.next());
+    iterator.close();
+    assertFalse(iterator.hasNext());
+    assertTrue(cursor.isClosed);
+  }
+
+  private static class TestCursor<T> implements MongoCursor<T> {
+    private final Iterator<T> source;
+    private volatile boolean isClosed;
+
+    TestCursor(Iterator<T> source) {
+      this.source = source;
+    }
+
+    @Override
+    public void close() {
+      isClosed = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !isClosed && source.hasNext();
+    }
+
+    @Override
+    public T next() {
+      return source.next();
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    @Override
+    public T tryNext() {
+      return hasNext() ? next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+      return null;
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+      return null;
+    }
+  }
+}
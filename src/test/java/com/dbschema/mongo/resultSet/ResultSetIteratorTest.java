@@ -0,0 +1,112 @@
+package com.dbschema.mongo.resultSet;
+
+import com.dbschema.mongo.Cancellation;
+import com.mongodb.MongoExecutionTimeoutException;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResultSetIteratorTest {
+
+  @Test
+  public void testNumbers() throws SQLException {
+    ResultSetIterator rs = new ResultSetIterator(Arrays.asList(42, 7L, 2.5, new Decimal128(new BigDecimal("12.345")), " 17 ", null));
+    assertTrue(rs.next());
+    assertEquals(42, rs.getInt(1));
+    assertEquals(42L, rs.getLong("map"));
+    assertEquals(new BigDecimal(42), rs.getBigDecimal(1));
+    assertFalse(rs.wasNull());
+    assertTrue(rs.next());
+    assertEquals(7, rs.getInt(1));
+    assertEquals(7.0, rs.getDouble(1), 0);
+    assertTrue(rs.next());
+    assertEquals(2.5, rs.getDouble(1), 0);
+    assertEquals(2, rs.getInt(1));
+    assertTrue(rs.next());
+    assertEquals(new BigDecimal("12.345"), rs.getBigDecimal(1));
+    assertEquals(new BigDecimal("12.35"), rs.getBigDecimal(1, 2));
+    assertEquals(12, rs.getLong(1));
+    assertTrue(rs.next());
+    assertEquals(17, rs.getInt(1));
+    assertTrue(rs.next());
+    assertEquals(0, rs.getInt(1));
+    assertTrue(rs.wasNull());
+    assertNull(rs.getBigDecimal(1));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testOutOfRange() throws SQLException {
+    ResultSetIterator rs = new ResultSetIterator(Arrays.asList(Long.MAX_VALUE, "abc"));
+    assertTrue(rs.next());
+    assertEquals(Long.MAX_VALUE, rs.getLong(1));
+    assertThrows(SQLException.class, () -> rs.getInt(1));
+    assertTrue(rs.next());
+    assertThrows(SQLException.class, () -> rs.getDouble(1));
+  }
+
+  @Test
+  public void testDriverExceptions() throws SQLException {
+    Iterator<Object> timeout = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        throw new MongoExecutionTimeoutException(50, "operation exceeded time limit");
+      }
+
+      @Override
+      public Object next() {
+        throw new NoSuchElementException();
+      }
+    };
+    assertThrows(SQLTimeoutException.class, () -> new ResultSetIterator(timeout).next());
+
+    ResultSetIterator cancelled = new ResultSetIterator(List.of(1).iterator());
+    cancelled.cancel();
+    SQLException e = assertThrows(SQLException.class, cancelled::next);
+    assertEquals(Cancellation.SQL_STATE, e.getSQLState());
+  }
+
+  @Test
+  public void testMaxRows() throws SQLException {
+    AtomicInteger closed = new AtomicInteger();
+    Iterator<Integer> iterator = List.of(1, 2, 3).iterator();
+    ResultSetIterator rs = new ResultSetIterator(iterator, 2, closed::incrementAndGet);
+    assertTrue(rs.next());
+    assertEquals(1, rs.getInt(1));
+    assertTrue(rs.next());
+    assertEquals(2, rs.getInt(1));
+    assertFalse(rs.next());
+    // the row after the limit is not read
+    assertTrue(iterator.hasNext());
+    assertEquals(0, closed.get());
+    rs.close();
+    assertEquals(1, closed.get());
+  }
+
+  @Test
+  public void testDates() throws SQLException {
+    Date date = new Date(1_600_000_000_000L);
+    ObjectId id = new ObjectId(date);
+    ResultSetIterator rs = new ResultSetIterator(Arrays.asList(date, id));
+    assertTrue(rs.next());
+    assertEquals(new Timestamp(date.getTime()), rs.getTimestamp(1));
+    assertEquals(date.getTime(), rs.getDate(1).getTime());
+    assertTrue(rs.next());
+    assertEquals(new Timestamp(date.getTime()), rs.getTimestamp(1));
+    assertEquals(id.toHexString(), rs.getString(1));
+    assertEquals(id.toHexString(), rs.getObject(1, String.class));
+  }
+}
@@ -0,0 +1,139 @@
+package com.dbschema.mongo.schema;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class MetaCollectionCacheTest {
+
+  @Test
+  public void testHitsAndExpiration() {
+    AtomicLong now = new AtomicLong();
+    MetaCollectionCache cache = new MetaCollectionCache(1000, now::get);
+    AtomicInteger discoveries = new AtomicInteger();
+    MetaCollection first = cache.get("db", "col", () -> discover(discoveries));
+    assertSame(first, cache.get("db", "col", () -> discover(discoveries)));
+    assertEquals(1, discoveries.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+    assertNotSame(first, cache.get("db", "col", () -> discover(discoveries)));
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testInvalidation() {
+    MetaCollectionCache cache = new MetaCollectionCache(60_000);
+    AtomicInteger discoveries = new AtomicInteger();
+    cache.get("db", "a", () -> discover(discoveries));
+    cache.get("db", "b", () -> discover(discoveries));
+    cache.get("other", "a", () -> discover(discoveries));
+    assertEquals(3, cache.size());
+    cache.invalidate("db", "a");
+    assertEquals(2, cache.size());
+    cache.invalidateDatabase("db");
+    assertEquals(1, cache.size());
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidationDuringDiscovery() {
+    MetaCollectionCache cache = new MetaCollectionCache(60_000);
+    AtomicInteger discoveries = new AtomicInteger();
+    MetaCollection stale = cache.get("db", "col", () -> {
+      cache.invalidate("db", "col");
+      return discover(discoveries);
+    });
+    assertNotNull(stale);
+    assertEquals(0, cache.size());
+    cache.get("db", "col", () -> {
+      cache.invalidateDatabase("db");
+      return discover(discoveries);
+    });
+    assertEquals(0, cache.size());
+    cache.get("db", "col", () -> {
+      cache.invalidateAll();
+      return discover(discoveries);
+    });
+    assertEquals(0, cache.size());
+
+    // a refresh that started before an invalidation must not replace the entry
+    long generation = cache.getGeneration("db", "col");
+    cache.invalidate("db", "col");
+    cache.put(discover(discoveries), generation);
+    assertEquals(0, cache.size());
+    cache.put(discover(discoveries), cache.getGeneration("db", "col"));
+    assertEquals(1, cache.size());
+    cache.invalidate("other", "col");
+    assertEquals(1, cache.size());
+    assertEquals(5, discoveries.get());
+  }
+
+  @Test
+  public void testPinnedDatabases() {
+    AtomicLong now = new AtomicLong();
+    MetaCollectionCache cache = new MetaCollectionCache(1000, now::get);
+    AtomicInteger discoveries = new AtomicInteger();
+    cache.pinDatabase("db");
+    MetaCollection pinned = cache.get("db", "a", () -> discover(discoveries));
+    cache.get("other", "a", () -> discover(discoveries));
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+    assertSame(pinned, cache.get("db", "a", () -> discover(discoveries)));
+    assertEquals(2, discoveries.get());
+    cache.invalidate("db", "a");
+    MetaCollection rediscovered = cache.get("db", "a", () -> discover(discoveries));
+    assertNotSame(pinned, rediscovered);
+    // the miss dropped the expired entry of the other database
+    assertEquals(1, cache.size());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+    cache.unpinDatabase("db");
+    assertEquals(0, cache.size());
+    assertNotSame(rediscovered, cache.get("db", "a", () -> discover(discoveries)));
+  }
+
+  @Test
+  public void testPurgeExpired() {
+    AtomicLong now = new AtomicLong();
+    MetaCollectionCache cache = new MetaCollectionCache(1000, now::get);
+    AtomicInteger discoveries = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      cache.get("db", "col" + i, () -> discover(discoveries));
+    }
+    assertEquals(10, cache.size());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    cache.get("db", "fresh", () -> discover(discoveries));
+    assertEquals(11, cache.size());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(700));
+    cache.get("db", "other", () -> discover(discoveries));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testFailuresAndDisabledCache() {
+    MetaCollectionCache cache = new MetaCollectionCache(60_000);
+    assertNull(cache.get("db", "col", () -> null));
+    assertEquals(0, cache.size());
+
+    MetaCollectionCache disabled = new MetaCollectionCache(0);
+    AtomicInteger discoveries = new AtomicInteger();
+    disabled.get("db", "col", () -> discover(discoveries));
+    disabled.get("db", "col", () -> discover(discoveries));
+    assertEquals(2, discoveries.get());
+    assertEquals(0, disabled.getHitCount());
+  }
+
+  private static MetaCollection discover(AtomicInteger discoveries) {
+    discoveries.incrementAndGet();
+    return new MetaCollection("db", "col");
+  }
+}
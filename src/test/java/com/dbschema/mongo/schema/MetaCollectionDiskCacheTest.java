@@ -0,0 +1,64 @@
+package com.dbschema.mongo.schema;
+
+import com.dbschema.mongo.schema.MetaCollectionDiskCache.Fingerprint;
+import com.dbschema.mongo.schema.MetaCollectionDiskCache.Stored;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.sql.Types;
+
+import static org.junit.Assert.*;
+
+public class MetaCollectionDiskCacheTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    collection.createField("_id", "ObjectId", Types.VARCHAR, true);
+    MetaJson address = collection.createJsonMapField("address", false);
+    address.createField("city.name", "String", Types.VARCHAR, true);
+    MetaJson tags = collection.createJsonListField("tags", true);
+    tags.createField("value", "Integer", Types.INTEGER, false);
+    collection.createMetaIndex("_id_", true, true).addColumn(new MetaIndexField(collection.fields.get(0), 1));
+    collection.createMetaIndex("city", false, false).addColumn(new MetaIndexField(address.fields.get(0), -1));
+
+    Path dir = folder.getRoot().toPath();
+    MetaCollectionDiskCache cache = new MetaCollectionDiskCache(dir, "mongodb://localhost", "50");
+    Fingerprint fingerprint = new Fingerprint("0a1b", 42, 7);
+    cache.store(collection, fingerprint);
+
+    Stored stored = cache.load("db", "users");
+    assertNotNull(stored);
+    assertEquals(fingerprint, stored.fingerprint());
+    MetaCollection loaded = stored.collection();
+    assertEquals("db", loaded.db);
+    assertEquals("users", loaded.name);
+    assertEquals(3, loaded.fields.size());
+    MetaJson loadedAddress = (MetaJson) loaded.fields.get(1);
+    assertEquals(MetaJson.TYPE_MAP, loadedAddress.type);
+    assertFalse(loadedAddress.isMandatory());
+    assertEquals("address.city\\.name", loadedAddress.fields.get(0).getNameWithPath());
+    MetaField value = ((MetaJson) loaded.fields.get(2)).fields.get(0);
+    assertEquals(Types.INTEGER, value.type);
+    assertEquals("Integer", value.typeName);
+    assertFalse(value.isMandatory());
+
+    assertEquals(2, loaded.metaIndexes.size());
+    MetaIndex index = loaded.metaIndexes.get(1);
+    assertEquals("city", index.name);
+    assertFalse(index.unique);
+    assertSame(loadedAddress.fields.get(0), index.metaIndexFields.get(0).metaField);
+    assertEquals(-1, index.metaIndexFields.get(0).ascOrDesc);
+    assertTrue(loaded.metaIndexes.get(0).pk);
+
+    assertNull(cache.load("db", "orders"));
+    assertNull(new MetaCollectionDiskCache(dir, "mongodb://other", "50").load("db", "users"));
+    assertNull(new MetaCollectionDiskCache(dir, "mongodb://localhost", "100").load("db", "users"));
+    cache.delete("db", "users");
+    assertNull(cache.load("db", "users"));
+  }
+}
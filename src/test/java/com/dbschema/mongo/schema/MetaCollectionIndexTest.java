@@ -0,0 +1,129 @@
+package com.dbschema.mongo.schema;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetaCollectionIndexTest {
+  private static final List<Document> INDEXES = List.of(
+    Document.parse("{name: '_id_', key: {_id: 1}}"),
+    Document.parse("{name: 'address', key: {'address.city': 1, age: -1}}"),
+    Document.parse("{name: 'name', key: {name: 1}, unique: true}"),
+    Document.parse("{name: 'wildcard', key: {'$**': 1}}"));
+
+  @Test
+  public void testPipeline() {
+    List<Bson> pipeline = MetaCollection.fieldsPipeline("users", List.of("a", "b.c"));
+    assertEquals(4, pipeline.size());
+    assertEquals(BsonDocument.parse("{$match: {a: {$exists: true}}}"), pipeline.get(0).toBsonDocument());
+    assertEquals(BsonDocument.parse("{$limit: 1}"), pipeline.get(1).toBsonDocument());
+    assertEquals(BsonDocument.parse("{$project: {a: 1}}"), pipeline.get(2).toBsonDocument());
+    assertEquals(BsonDocument.parse("{$unionWith: {coll: 'users', pipeline: [" +
+                                    "{$match: {'b.c': {$exists: true}}}, {$limit: 1}, {$project: {'b.c': 1}}]}}"),
+                 pipeline.get(3).toBsonDocument());
+  }
+
+  @Test
+  public void testIndexFields() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    collection.createField("name", "String", Types.VARCHAR, true);
+    MetaField name = collection.getField("name");
+    TestQueries queries = new TestQueries(List.of(Document.parse("{_id: 1}"),
+                                                  Document.parse("{age: 42}"),
+                                                  Document.parse("{address: {city: 'Paris'}}")));
+    collection.discoverIndexes(INDEXES, queries);
+
+    // sampled fields are not fetched, wildcard paths are not queried
+    assertEquals(1, queries.pipelines.size());
+    assertEquals(toBson(MetaCollection.fieldsPipeline("users", List.of("_id", "address.city", "age"))),
+                 toBson(queries.pipelines.get(0)));
+    assertEquals(List.of(), queries.paths);
+    assertIndexFields(collection);
+    assertSame(name, collection.metaIndexes.get(2).metaIndexFields.get(0).metaField);
+    assertTrue(collection.metaIndexes.get(2).unique);
+  }
+
+  @Test
+  public void testFallbackWithoutUnionWith() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    TestQueries queries = new TestQueries(List.of(Document.parse("{_id: 1}"),
+                                                  Document.parse("{age: 42}"),
+                                                  Document.parse("{address: {city: 'Paris'}}"),
+                                                  Document.parse("{name: 'a'}")));
+    queries.failure = new MongoCommandException(BsonDocument.parse("{ok: 0, code: 40324, errmsg: 'Unrecognized pipeline stage name'}"),
+                                                 new ServerAddress());
+    collection.discoverIndexes(INDEXES, queries);
+
+    assertEquals(List.of("_id", "address.city", "age", "name"), queries.paths);
+    assertIndexFields(collection);
+  }
+
+  @Test
+  public void testUnauthorized() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    TestQueries queries = new TestQueries(List.of());
+    queries.failure = new MongoCommandException(BsonDocument.parse("{ok: 0, code: 13, errmsg: 'not authorized'}"), new ServerAddress());
+    collection.discoverIndexes(INDEXES, queries);
+
+    assertEquals(List.of(), queries.paths);
+    // indexes are still listed with stub fields
+    assertEquals(4, collection.metaIndexes.size());
+    MetaField city = collection.findField("address.city");
+    assertNotNull(city);
+    assertEquals(Types.VARCHAR, city.type);
+    assertSame(city, collection.metaIndexes.get(1).metaIndexFields.get(0).metaField);
+  }
+
+  private static List<BsonDocument> toBson(List<Bson> pipeline) {
+    return pipeline.stream().map(Bson::toBsonDocument).toList();
+  }
+
+  private static void assertIndexFields(MetaCollection collection) {
+    assertEquals(List.of("_id_", "address", "name", "wildcard"), collection.metaIndexes.stream().map(i -> i.name).toList());
+    assertTrue(collection.metaIndexes.get(0).pk);
+    MetaIndex address = collection.metaIndexes.get(1);
+    MetaIndexField city = address.metaIndexFields.get(0);
+    assertSame(collection.findField("address.city"), city.metaField);
+    assertEquals("String", city.metaField.typeName);
+    assertEquals(1, city.ascOrDesc);
+    MetaIndexField age = address.metaIndexFields.get(1);
+    assertSame(collection.getField("age"), age.metaField);
+    assertEquals(Types.INTEGER, age.metaField.type);
+    assertEquals(-1, age.ascOrDesc);
+    assertEquals("$**", collection.metaIndexes.get(3).metaIndexFields.get(0).metaField.name);
+  }
+
+  private static final class TestQueries implements MetaCollection.FieldQueries {
+    private final List<Document> documents;
+    private final List<List<Bson>> pipelines = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+    private MongoCommandException failure;
+
+    TestQueries(List<Document> documents) {
+      this.documents = documents;
+    }
+
+    @Override
+    public Iterable<?> aggregate(List<Bson> pipeline) {
+      pipelines.add(pipeline);
+      if (failure != null) throw failure;
+      return documents;
+    }
+
+    @Override
+    public Object findOne(String fieldPath) {
+      paths.add(fieldPath);
+      String root = fieldPath.split("\\.")[0];
+      return documents.stream().filter(d -> d.containsKey(root)).findFirst().orElse(null);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.dbschema.mongo.schema;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetaJsonTest {
+
+  @Test
+  public void testCreateFields() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    collection.createField("name", "String", Types.VARCHAR, true);
+    collection.createField("name", "Integer", Types.INTEGER, false);
+    MetaJson address = collection.createJsonMapField("address", true);
+    assertSame(address, collection.createJsonMapField("address", false));
+    assertSame(address, collection.createJsonListField("address", false));
+    // a document may have a scalar and an embedded document with the same name
+    MetaJson name = collection.createJsonMapField("name", false);
+
+    assertEquals(List.of("name", "address", "name"), collection.fields.stream().map(f -> f.name).toList());
+    assertEquals(Types.VARCHAR, collection.getField("name").type);
+    assertNull(collection.getField("zip"));
+  }
+
+  @Test
+  public void testChangeFieldsDirectly() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    collection.createField("name", "String", Types.VARCHAR, true);
+    MetaJson address = collection.createJsonMapField("address", true);
+    address.createField("city", "String", Types.VARCHAR, true);
+
+    MetaField zip = new MetaField(collection, "zip", "String", Types.VARCHAR);
+    collection.fields.add(zip);
+    assertSame(zip, collection.getField("zip"));
+    collection.createField("zip", "Integer", Types.INTEGER, true);
+    assertEquals(3, collection.fields.size());
+
+    collection.fields.remove(address);
+    assertNull(collection.getField("address"));
+    assertNull(collection.findField("address.city"));
+
+    MetaJson zipJson = new MetaJson(collection, "zip", MetaJson.TYPE_MAP);
+    collection.fields.set(collection.fields.indexOf(zip), zipJson);
+    assertSame(zipJson, collection.getField("zip"));
+    assertSame(zipJson, collection.createJsonMapField("zip", false));
+    assertEquals(2, collection.fields.size());
+  }
+
+  @Test
+  public void testFindField() {
+    MetaCollection collection = new MetaCollection("db", "users");
+    collection.createField("a", "String", Types.VARCHAR, true);
+    MetaJson address = collection.createJsonMapField("address", true);
+    address.createField("city", "String", Types.VARCHAR, true);
+    MetaJson tags = collection.createJsonListField("tags", true);
+    tags.createField("v", "Integer", Types.INTEGER, true);
+
+    assertSame(address, collection.findField("address"));
+    assertSame(address.getField("city"), collection.findField("address.city"));
+    assertSame(tags.getField("v"), collection.findField("tags.v"));
+    assertNull(collection.findField("address.zip"));
+    assertNull(collection.findField("a.b"));
+    assertNull(collection.findField("addr"));
+  }
+
+  /**
+   * Discovery of documents with 10 000 fields looks fields up by name, it iterates the fields of a document
+   * once per discovered document to update mandatory flags.
+   */
+  @Test
+  public void testWideDocumentDiscovery() {
+    int fieldCount = 10_000, documentCount = 10;
+    List<Document> documents = new ArrayList<>();
+    for (int d = 0; d < documentCount; d++) {
+      Document document = new Document();
+      Document nested = new Document();
+      for (int i = 0; i < fieldCount; i++) {
+        // every document misses a different field
+        if (i != d) document.append("field" + i, i);
+        nested.append("nested" + i, "value");
+      }
+      document.append("nested", nested);
+      documents.add(document);
+    }
+
+    MetaCollection collection = new MetaCollection("db", "wide");
+    for (Document document : documents) {
+      collection.discoverDocument(document);
+    }
+    MetaJson nestedJson = (MetaJson) collection.getField("nested");
+    assertNotNull(nestedJson);
+    assertTrue(collection.getIterationCount() <= documentCount);
+    assertTrue(nestedJson.getIterationCount() <= documentCount);
+
+    assertEquals(fieldCount + 1, collection.fields.size());
+    assertFalse(collection.getField("field0").isMandatory());
+    assertTrue(collection.getField("field" + documentCount).isMandatory());
+    MetaField nested = collection.findField("nested.nested" + (fieldCount - 1));
+    assertNotNull(nested);
+    assertTrue(nested.isMandatory());
+  }
+}
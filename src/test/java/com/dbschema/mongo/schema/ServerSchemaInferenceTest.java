@@ -0,0 +1,70 @@
+package com.dbschema.mongo.schema;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ServerSchemaInferenceTest {
+
+  @Test
+  public void testApply() {
+    List<Document> results = List.of(
+      result(List.of(), "object", 2, 2),
+      result(List.of("tags", "v"), "int", 1, 0),
+      result(List.of("name"), "string", 1, 0),
+      result(List.of("name"), "null", 1, 0),
+      result(List.of("address"), "object", 2, 2),
+      result(List.of("address", "zip"), "int", 1, 0),
+      result(List.of("address", "city"), "string", 2, 0),
+      result(List.of("tags"), "documents", 2, 1),
+      result(List.of("a.b"), "double", 1, 0),
+      result(List.of("_id"), "objectId", 2, 0));
+    MetaCollection collection = new MetaCollection("db", "users");
+    ServerSchemaInference.apply(collection, results);
+
+    assertEquals(List.of("_id", "a.b", "address", "name", "tags"), collection.fields.stream().map(f -> f.name).toList());
+    MetaField id = collection.fields.get(0);
+    assertEquals("ObjectId", id.typeName);
+    assertTrue(id.isMandatory());
+    MetaField dotted = collection.fields.get(1);
+    assertEquals(Types.DOUBLE, dotted.type);
+    assertFalse(dotted.isMandatory());
+    assertEquals("a\\.b", dotted.getNameWithPath());
+
+    MetaJson address = (MetaJson) collection.fields.get(2);
+    assertEquals(MetaJson.TYPE_MAP, address.type);
+    assertTrue(address.isMandatory());
+    assertEquals(List.of("city", "zip"), address.fields.stream().map(f -> f.name).toList());
+    assertTrue(address.fields.get(0).isMandatory());
+    assertFalse(address.fields.get(1).isMandatory());
+    assertEquals(Types.INTEGER, address.fields.get(1).type);
+
+    MetaField name = collection.fields.get(3);
+    assertEquals("String", name.typeName);
+    assertTrue(name.isMandatory());
+
+    MetaJson tags = (MetaJson) collection.fields.get(4);
+    assertEquals(MetaJson.TYPE_LIST, tags.type);
+    assertTrue(tags.fields.get(0).isMandatory());
+    assertEquals("Integer", tags.fields.get(0).typeName);
+  }
+
+  @Test
+  public void testPipeline() {
+    List<?> pipeline = ServerSchemaInference.pipeline(10);
+    assertEquals(4, pipeline.size());
+    assertEquals(new Document("$sample", new Document("size", 10)), pipeline.get(0));
+    String json = ((Document) pipeline.get(1)).toJson();
+    assertTrue(json.contains("\"$$path" + ServerSchemaInference.MAX_DEPTH + "\""));
+    assertTrue(json.contains("\"$$path1\""));
+    assertFalse(json.contains("\"$$path0\""));
+  }
+
+  private static Document result(List<String> path, String type, long count, long objects) {
+    return new Document("_id", new Document("p", path).append("t", type)).append("count", count).append("objects", objects);
+  }
+}